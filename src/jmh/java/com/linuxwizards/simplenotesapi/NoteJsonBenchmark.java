@@ -0,0 +1,81 @@
+package com.linuxwizards.simplenotesapi;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of writing and reading {@link Note} JSON, for a single note and for a default-sized list page.
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class NoteJsonBenchmark {
+    private static final int pageSize = 20;
+
+    private ObjectWriter noteWriter;
+    private ObjectWriter listWriter;
+    private ObjectReader noteReader;
+    private ObjectReader listReader;
+    private Note note;
+    private List<Note> page;
+    private byte[] noteJson;
+    private byte[] pageJson;
+
+    @Setup
+    public void setUp() throws IOException {
+        // Configured like the ObjectMapper Spring Boot gives the controllers
+        ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        noteWriter = objectMapper.writerFor(Note.class);
+        listWriter = objectMapper.writerFor(objectMapper.getTypeFactory().constructCollectionType(List.class, Note.class));
+        noteReader = objectMapper.readerFor(Note.class);
+        listReader = objectMapper.readerFor(objectMapper.getTypeFactory().constructCollectionType(List.class, Note.class));
+
+        note = new Note(99L, "This is a title", "This is a note with a few sentences of content.", "sarah1", 3L);
+        page = new ArrayList<>();
+        for (long id = 0; id < pageSize; id++) {
+            page.add(new Note(id, "Title " + id, "Content of note " + id + " with a few more words", "sarah1", 0L));
+        }
+        noteJson = noteWriter.writeValueAsBytes(note);
+        pageJson = listWriter.writeValueAsBytes(page);
+    }
+
+    @Benchmark
+    public byte[] serializeNote() throws IOException {
+        return noteWriter.writeValueAsBytes(note);
+    }
+
+    @Benchmark
+    public byte[] serializePage() throws IOException {
+        return listWriter.writeValueAsBytes(page);
+    }
+
+    @Benchmark
+    public Note deserializeNote() throws IOException {
+        return noteReader.readValue(noteJson);
+    }
+
+    @Benchmark
+    public List<Note> deserializePage() throws IOException {
+        return listReader.readValue(pageJson);
+    }
+}
@@ -0,0 +1,109 @@
+package com.linuxwizards.simplenotesapi;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency of the {@link NoteRepository} queries behind the read endpoints, against an in-memory H2
+ * database holding {@code notes} notes spread over 1000 owners. The benchmarked owner has the most notes.
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class NoteRepositoryBenchmark {
+    private static final String owner = "owner-0";
+    private static final int owners = 1000;
+    private static final int pageSize = 20;
+
+    @Param({"1000", "100000", "1000000"})
+    int notes;
+
+    private ConfigurableApplicationContext context;
+    private NoteRepository noteRepository;
+    private long[] ownerIds;
+    private PageRequest deepPage;
+    private final SplittableRandom random = new SplittableRandom(42);
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = new SpringApplicationBuilder(SimplenotesapiApplication.class)
+                .web(WebApplicationType.NONE)
+                .properties("spring.datasource.url=jdbc:h2:mem:benchmark;DB_CLOSE_DELAY=-1",
+                        "spring.main.banner-mode=off")
+                .run();
+        noteRepository = context.getBean(NoteRepository.class);
+
+        JdbcTemplate jdbcTemplate = context.getBean(JdbcTemplate.class);
+        List<Object[]> rows = new ArrayList<>();
+        for (int i = 0; i < notes; i++) {
+            // Same skew as the test data generator: most notes belong to low-numbered owners
+            double skew = random.nextDouble();
+            String noteOwner = "owner-" + (int) (skew * skew * owners);
+            rows.add(new Object[]{"Title " + i, "Generated content of note " + i, noteOwner});
+            if (rows.size() == 10_000) {
+                jdbcTemplate.batchUpdate("INSERT INTO note (title, content, owner) VALUES (?, ?, ?)", rows);
+                rows.clear();
+            }
+        }
+        if (!rows.isEmpty()) {
+            jdbcTemplate.batchUpdate("INSERT INTO note (title, content, owner) VALUES (?, ?, ?)", rows);
+        }
+        jdbcTemplate.execute("ANALYZE");
+
+        ownerIds = jdbcTemplate.queryForList("SELECT id FROM note WHERE owner = ?", Long.class, owner)
+                .stream().mapToLong(Long::longValue).toArray();
+        int lastPage = Math.max(ownerIds.length / pageSize - 1, 0);
+        deepPage = PageRequest.of(lastPage, pageSize, Sort.by(Sort.Direction.DESC, "id"));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Note findByIdAndOwner() {
+        return noteRepository.findByIdAndOwner(ownerIds[random.nextInt(ownerIds.length)], owner);
+    }
+
+    @Benchmark
+    public Page<Note> firstPage() {
+        return noteRepository.findByOwner(owner, PageRequest.of(0, pageSize, Sort.by(Sort.Direction.DESC, "id")));
+    }
+
+    @Benchmark
+    public Page<Note> deepPage() {
+        return noteRepository.findByOwner(owner, deepPage);
+    }
+
+    @Benchmark
+    public List<Note> cursorPage() {
+        return noteRepository.findByOwnerBeforeId(owner, ownerIds[random.nextInt(ownerIds.length)], pageSize);
+    }
+}
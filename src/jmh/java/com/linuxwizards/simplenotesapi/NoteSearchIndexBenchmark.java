@@ -0,0 +1,94 @@
+package com.linuxwizards.simplenotesapi;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Indexing throughput and query latency of {@link NoteSearchIndex} for one owner with a large corpus.
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class NoteSearchIndexBenchmark {
+    private static final String[] words = {
+            "meeting", "budget", "shopping", "recipe", "bread", "project", "deadline", "holiday",
+            "flight", "hotel", "invoice", "report", "review", "design", "release", "backlog",
+            "garden", "doctor", "birthday", "present", "train", "ticket", "library", "concert"
+    };
+
+    @Param({"10000", "100000"})
+    int notes;
+
+    private NoteSearchIndex index;
+    private List<Note> corpus;
+    private long nextId;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        SplittableRandom random = new SplittableRandom(42);
+        corpus = new ArrayList<>(notes);
+        for (int i = 0; i < notes; i++) {
+            corpus.add(new Note((long) i, sentence(random, 3), sentence(random, 40), "owner"));
+        }
+        index = new NoteSearchIndex();
+        corpus.forEach(index::index);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public void index() {
+        // Re-index existing notes with another note's text, so the corpus size stays fixed
+        long id = nextId++ % notes;
+        Note template = corpus.get((int) ((id * 31 + 7) % notes));
+        index.index(new Note(id, template.title(), template.content(), "owner"));
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public List<NoteSearchIndex.Hit> searchSingleTerm() {
+        return index.search("owner", "budget", null, 20);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public List<NoteSearchIndex.Hit> searchTwoTerms() {
+        return index.search("owner", "flight hotel", null, 20);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public List<NoteSearchIndex.Hit> searchPrefix() {
+        return index.search("owner", "re", null, 20);
+    }
+
+    private static String sentence(SplittableRandom random, int length) {
+        StringBuilder sentence = new StringBuilder();
+        for (int i = 0; i < length; i++) {
+            if (i > 0) {
+                sentence.append(' ');
+            }
+            sentence.append(words[random.nextInt(words.length)]);
+        }
+        return sentence.toString();
+    }
+}
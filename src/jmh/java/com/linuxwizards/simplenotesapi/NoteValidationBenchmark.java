@@ -0,0 +1,39 @@
+package com.linuxwizards.simplenotesapi;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of {@link NoteController#isNoteValid(String, String, String)} for accepted and rejected notes.
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class NoteValidationBenchmark {
+    private String title = "This is a title";
+    private String content = "This is a note with a few sentences of content.";
+    private String longContent = "x".repeat(1001);
+    private String owner = "sarah1";
+
+    @Benchmark
+    public boolean validNote() {
+        return NoteController.isNoteValid(title, content, owner);
+    }
+
+    @Benchmark
+    public boolean contentTooLong() {
+        return NoteController.isNoteValid(title, longContent, owner);
+    }
+}
@@ -0,0 +1,51 @@
+package com.linuxwizards.simplenotesapi;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of verifying a Basic-auth password with the configured encoder, and of the
+ * {@link CredentialCache} lookup that replaces it for repeated requests.
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@BenchmarkMode(Mode.AverageTime)
+public class PasswordEncoderBenchmark {
+    private PasswordEncoder passwordEncoder;
+    private String encodedPassword;
+    private CredentialCache credentialCache;
+
+    @Setup
+    public void setUp() {
+        passwordEncoder = new SecurityConfig().passwordEncoder();
+        encodedPassword = passwordEncoder.encode("abc123");
+        credentialCache = new CredentialCache(10_000, Duration.ofMinutes(5));
+        credentialCache.put("sarah1", "abc123", encodedPassword);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public boolean encoderMatches() {
+        return passwordEncoder.matches("abc123", encodedPassword);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public boolean cachedCredentials() {
+        return credentialCache.contains("sarah1", "abc123", encodedPassword);
+    }
+}
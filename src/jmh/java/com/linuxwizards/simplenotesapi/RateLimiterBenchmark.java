@@ -0,0 +1,77 @@
+package com.linuxwizards.simplenotesapi;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Cost of the {@link RateLimitFilter} check on the fast path, with 8 threads taking tokens from one
+ * shared bucket (worst-case contention) and from a bucket each. Limits are high enough that every
+ * request is allowed, so this is the overhead every request pays.
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Threads(8)
+public class RateLimiterBenchmark {
+    private static final String authorization = "Basic "
+            + Base64.getEncoder().encodeToString("sarah1:abc123".getBytes(StandardCharsets.UTF_8));
+
+    private RateLimiter rateLimiter;
+
+    @State(Scope.Thread)
+    public static class Client {
+        private static final AtomicInteger nextClient = new AtomicInteger();
+
+        String name;
+
+        @Setup
+        public void setUp() {
+            name = "client-" + nextClient.getAndIncrement() + "@10.0.0.1";
+        }
+    }
+
+    @Setup
+    public void setUp() {
+        RateLimiter.Limit unlimited = new RateLimiter.Limit(Integer.MAX_VALUE, 1_000_000_000);
+        rateLimiter = new RateLimiter(true, Map.of(
+                RateLimiter.Group.READS, unlimited,
+                RateLimiter.Group.WRITES, unlimited,
+                RateLimiter.Group.LOGIN, unlimited,
+                RateLimiter.Group.PASSWORD_CHECKS, unlimited), System::nanoTime);
+    }
+
+    @Benchmark
+    public long sharedBucket() {
+        return rateLimiter.tryAcquire(RateLimiter.Group.READS, "sarah1@10.0.0.1");
+    }
+
+    @Benchmark
+    public long bucketPerThread(Client client) {
+        return rateLimiter.tryAcquire(RateLimiter.Group.READS, client.name);
+    }
+
+    @Benchmark
+    public long fullCheck() {
+        // Everything the filter does per request besides writing the response
+        RateLimiter.Group group = RateLimitFilter.group("GET", "/notes/99");
+        return rateLimiter.tryAcquire(group, RateLimitFilter.client(authorization, "10.0.0.1"));
+    }
+}
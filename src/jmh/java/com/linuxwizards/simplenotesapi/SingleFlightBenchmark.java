@@ -0,0 +1,102 @@
+package com.linuxwizards.simplenotesapi;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A thundering herd: 64 threads requesting the same owner's first page at once, each running the
+ * page query plus its COUNT directly or through {@link SingleFlight}. Sample mode reports the latency
+ * percentiles; the number of queries per request is printed after every iteration.
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Threads(64)
+public class SingleFlightBenchmark {
+    private static final String owner = "owner-0";
+    private static final int notes = 100_000;
+    private static final PageRequest firstPage = PageRequest.of(0, 20, Sort.by(Sort.Direction.DESC, "id"));
+
+    private ConfigurableApplicationContext context;
+    private NoteRepository noteRepository;
+    private SingleFlight singleFlight;
+    private ObjectMapper objectMapper;
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder queries = new LongAdder();
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = new SpringApplicationBuilder(SimplenotesapiApplication.class)
+                .web(WebApplicationType.NONE)
+                .properties("spring.datasource.url=jdbc:h2:mem:single-flight;DB_CLOSE_DELAY=-1",
+                        "spring.main.banner-mode=off")
+                .run();
+        noteRepository = context.getBean(NoteRepository.class);
+        singleFlight = context.getBean(SingleFlight.class);
+        objectMapper = context.getBean(ObjectMapper.class);
+
+        JdbcTemplate jdbcTemplate = context.getBean(JdbcTemplate.class);
+        List<Object[]> rows = new ArrayList<>();
+        for (int i = 0; i < notes; i++) {
+            rows.add(new Object[]{"Title " + i, "Generated content of note " + i, owner});
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO note (title, content, owner) VALUES (?, ?, ?)", rows);
+        jdbcTemplate.execute("ANALYZE");
+    }
+
+    @TearDown(Level.Iteration)
+    public void reportQueries() {
+        System.out.printf("%n%d requests, %.3f queries per request%n",
+                requests.sum(), (double) queries.sum() / Math.max(1, requests.sum()));
+        requests.reset();
+        queries.reset();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    private List<Note> query() {
+        queries.increment();
+        return noteRepository.findByOwner(owner, firstPage).getContent();
+    }
+
+    @Benchmark
+    public byte[] direct() throws Exception {
+        requests.increment();
+        return objectMapper.writeValueAsBytes(query());
+    }
+
+    @Benchmark
+    public byte[] coalesced() {
+        requests.increment();
+        return singleFlight.load(owner, firstPage, this::query).json();
+    }
+}
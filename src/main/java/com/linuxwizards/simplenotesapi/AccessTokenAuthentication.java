@@ -0,0 +1,31 @@
+package com.linuxwizards.simplenotesapi;
+
+import org.springframework.security.authentication.AbstractAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+
+/**
+ * Authentication established from a verified access token rather than a password.
+ */
+class AccessTokenAuthentication extends AbstractAuthenticationToken {
+    private final AccessTokenService.VerifiedToken token;
+
+    AccessTokenAuthentication(AccessTokenService.VerifiedToken token) {
+        super(token.roles().stream().map(SimpleGrantedAuthority::new).toList());
+        this.token = token;
+        setAuthenticated(true);
+    }
+
+    AccessTokenService.VerifiedToken getToken() {
+        return token;
+    }
+
+    @Override
+    public Object getCredentials() {
+        return null;
+    }
+
+    @Override
+    public Object getPrincipal() {
+        return token.username();
+    }
+}
@@ -0,0 +1,60 @@
+package com.linuxwizards.simplenotesapi;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.context.SecurityContextHolderStrategy;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.Optional;
+
+/**
+ * Authenticates requests carrying {@code Authorization: Bearer <token>} issued by {@code /login}.
+ * Requests without a bearer token fall through to HTTP Basic. Verification is timed as {@code notes.auth}.
+ */
+class AccessTokenFilter extends OncePerRequestFilter {
+    private static final String bearerPrefix = "Bearer ";
+
+    private final AccessTokenService accessTokenService;
+    private final MeterRegistry meterRegistry;
+    private final SecurityContextHolderStrategy securityContextHolderStrategy =
+            SecurityContextHolder.getContextHolderStrategy();
+
+    AccessTokenFilter(AccessTokenService accessTokenService, MeterRegistry meterRegistry) {
+        this.accessTokenService = accessTokenService;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        String header = request.getHeader(HttpHeaders.AUTHORIZATION);
+        if (header == null || !header.regionMatches(true, 0, bearerPrefix, 0, bearerPrefix.length())) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+
+        Timer.Sample sample = Timer.start(meterRegistry);
+        Optional<AccessTokenService.VerifiedToken> token =
+                accessTokenService.verify(header.substring(bearerPrefix.length()).trim());
+        sample.stop(meterRegistry.timer("notes.auth", "method", "bearer",
+                "outcome", token.isPresent() ? "success" : "failure"));
+        if (token.isEmpty()) {
+            response.setHeader(HttpHeaders.WWW_AUTHENTICATE, "Bearer error=\"invalid_token\"");
+            response.sendError(HttpServletResponse.SC_UNAUTHORIZED);
+            return;
+        }
+
+        SecurityContext context = securityContextHolderStrategy.createEmptyContext();
+        context.setAuthentication(new AccessTokenAuthentication(token.get()));
+        securityContextHolderStrategy.setContext(context);
+        filterChain.doFilter(request, response);
+    }
+}
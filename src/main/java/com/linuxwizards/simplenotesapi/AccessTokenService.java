@@ -0,0 +1,152 @@
+package com.linuxwizards.simplenotesapi;
+
+import org.bouncycastle.crypto.digests.SHA256Digest;
+import org.bouncycastle.crypto.macs.HMac;
+import org.bouncycastle.crypto.params.KeyParameter;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Issues and verifies short-lived HMAC-SHA256 signed access tokens.
+ * <p>
+ * Token format: {@code <kid>.<payload>.<signature>}, base64url encoded, where the payload is
+ * {@code <expiresAt>|<tokenId>|<roles>|<username>}. Verification is a single HMAC - no password
+ * hashing and no lookups other than the in-memory revocation list.
+ * <p>
+ * Signing keys rotate after {@code rotationInterval}; retired keys are kept around until every
+ * token they signed has expired.
+ */
+class AccessTokenService {
+    private static final Base64.Encoder encoder = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder decoder = Base64.getUrlDecoder();
+    private static final int keyLength = 32;
+
+    private final Duration ttl;
+    private final Duration rotationInterval;
+    private final Clock clock;
+    private final SecureRandom random = new SecureRandom();
+
+    private final Map<String, SigningKey> keys = new ConcurrentHashMap<>();
+    private final Map<String, Long> revokedTokens = new ConcurrentHashMap<>();
+    private final ReentrantLock rotationLock = new ReentrantLock();
+    private volatile SigningKey currentKey;
+
+    private record SigningKey(String id, byte[] secret, long createdAtMillis) {}
+
+    record IssuedToken(String token, String tokenId, long expiresAtMillis) {}
+
+    record VerifiedToken(String username, String tokenId, List<String> roles, long expiresAtMillis) {}
+
+    AccessTokenService(Duration ttl, Duration rotationInterval, Clock clock) {
+        this.ttl = ttl;
+        this.rotationInterval = rotationInterval;
+        this.clock = clock;
+        rotateKey();
+    }
+
+    IssuedToken issue(String username, Collection<String> roles) {
+        SigningKey key = signingKey();
+        long expiresAt = clock.millis() + ttl.toMillis();
+        String tokenId = UUID.randomUUID().toString();
+        String payload = expiresAt + "|" + tokenId + "|" + String.join(",", roles) + "|" + username;
+
+        String header = key.id() + "." + encoder.encodeToString(payload.getBytes(StandardCharsets.UTF_8));
+        String token = header + "." + encoder.encodeToString(sign(key.secret(), header));
+        return new IssuedToken(token, tokenId, expiresAt);
+    }
+
+    Optional<VerifiedToken> verify(String token) {
+        String[] parts = token.split("\\.", -1);
+        if (parts.length != 3) {
+            return Optional.empty();
+        }
+
+        SigningKey key = keys.get(parts[0]);
+        if (key == null) {
+            return Optional.empty();
+        }
+
+        try {
+            byte[] signature = decoder.decode(parts[2]);
+            byte[] expected = sign(key.secret(), parts[0] + "." + parts[1]);
+            if (!MessageDigest.isEqual(signature, expected)) {
+                return Optional.empty();
+            }
+
+            String[] fields = new String(decoder.decode(parts[1]), StandardCharsets.UTF_8).split("\\|", 4);
+            if (fields.length != 4) {
+                return Optional.empty();
+            }
+            long expiresAt = Long.parseLong(fields[0]);
+            if (expiresAt <= clock.millis() || revokedTokens.containsKey(fields[1])) {
+                return Optional.empty();
+            }
+
+            List<String> roles = fields[2].isEmpty() ? List.of() : List.of(fields[2].split(","));
+            return Optional.of(new VerifiedToken(fields[3], fields[1], roles, expiresAt));
+        } catch (IllegalArgumentException e) {
+            // Malformed base64 or expiry - treat like any other invalid token
+            return Optional.empty();
+        }
+    }
+
+    void revoke(String tokenId, long expiresAtMillis) {
+        long now = clock.millis();
+        revokedTokens.values().removeIf(expiresAt -> expiresAt <= now);
+        if (expiresAtMillis > now) {
+            revokedTokens.put(tokenId, expiresAtMillis);
+        }
+    }
+
+    /**
+     * Starts signing with a fresh key. Tokens signed with older keys stay valid until they expire.
+     */
+    void rotateKey() {
+        byte[] secret = new byte[keyLength];
+        random.nextBytes(secret);
+        SigningKey key = new SigningKey(UUID.randomUUID().toString(), secret, clock.millis());
+        keys.put(key.id(), key);
+        currentKey = key;
+
+        long retireBefore = clock.millis() - rotationInterval.toMillis() - ttl.toMillis();
+        keys.values().removeIf(old -> old != key && old.createdAtMillis() < retireBefore);
+    }
+
+    private SigningKey signingKey() {
+        SigningKey key = currentKey;
+        if (clock.millis() - key.createdAtMillis() >= rotationInterval.toMillis()) {
+            rotationLock.lock();
+            try {
+                if (currentKey == key) {
+                    rotateKey();
+                }
+                key = currentKey;
+            } finally {
+                rotationLock.unlock();
+            }
+        }
+        return key;
+    }
+
+    private static byte[] sign(byte[] secret, String data) {
+        HMac hmac = new HMac(new SHA256Digest());
+        hmac.init(new KeyParameter(secret));
+        byte[] bytes = data.getBytes(StandardCharsets.UTF_8);
+        hmac.update(bytes, 0, bytes.length);
+        byte[] signature = new byte[hmac.getMacSize()];
+        hmac.doFinal(signature, 0);
+        return signature;
+    }
+}
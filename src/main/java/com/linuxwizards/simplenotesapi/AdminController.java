@@ -0,0 +1,108 @@
+package com.linuxwizards.simplenotesapi;
+
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.Map;
+
+/**
+ * Online backups of the whole database and bulk user imports, for users with the NOTES-ADMIN role.
+ */
+@RestController
+@RequestMapping("/admin")
+class AdminController {
+    private final JdbcTemplate jdbcTemplate;
+    private final StorageProperties storageProperties;
+    private final UserImporter userImporter;
+    private final JdbcUserDetailsService userDetailsService;
+
+    private AdminController(JdbcTemplate jdbcTemplate, StorageProperties storageProperties,
+                            UserImporter userImporter, JdbcUserDetailsService userDetailsService) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.storageProperties = storageProperties;
+        this.userImporter = userImporter;
+        this.userDetailsService = userDetailsService;
+    }
+
+    /**
+     * Copies the database file with H2's {@code BACKUP} while the application keeps running, then streams it.
+     */
+    @GetMapping(value = "/backup", produces = "application/zip")
+    private ResponseEntity<StreamingResponseBody> backup() {
+        if (!storageProperties.isPersistent()) {
+            // In-memory databases have no file to back up; /admin/script still works
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        }
+
+        StreamingResponseBody body = outputStream -> {
+            Path backup = Files.createTempFile("notes-backup", ".zip");
+            try {
+                jdbcTemplate.execute("BACKUP TO '" + backup.toString().replace("'", "''") + "'");
+                Files.copy(backup, outputStream);
+            } finally {
+                Files.deleteIfExists(backup);
+            }
+        };
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                        "attachment; filename=\"notes-" + Instant.now().getEpochSecond() + ".zip\"")
+                .body(body);
+    }
+
+    /**
+     * Streams the database as SQL statements from H2's {@code SCRIPT}, one per line.
+     */
+    @GetMapping(value = "/script", produces = MediaType.TEXT_PLAIN_VALUE)
+    private ResponseEntity<StreamingResponseBody> script() {
+        StreamingResponseBody body = outputStream -> {
+            BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+            jdbcTemplate.query("SCRIPT", resultSet -> {
+                try {
+                    writer.write(resultSet.getString(1));
+                    writer.newLine();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            writer.flush();
+        };
+        return ResponseEntity.ok()
+                .contentType(MediaType.TEXT_PLAIN)
+                .body(body);
+    }
+
+    /**
+     * Imports users with already hashed passwords, one per line as {@code username,argon2-hash,ROLE;ROLE}.
+     * Batches before a malformed line stay imported, so a corrected file can simply be posted again.
+     */
+    @PostMapping(value = "/users", consumes = "text/csv")
+    private ResponseEntity<?> importUsers(HttpServletRequest request) throws IOException {
+        try (BufferedReader reader = request.getReader()) {
+            int imported = userImporter.importUsers(reader);
+            return ResponseEntity.ok(Map.of("imported", imported));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        } finally {
+            // Replaced users must not keep authenticating with their old password or roles
+            userDetailsService.clear();
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.linuxwizards.simplenotesapi;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.AuthenticationException;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.stream.Collectors;
+
+/**
+ * {@link DaoAuthenticationProvider} that skips the (deliberately expensive) password hash
+ * when the same credentials were verified recently against the same stored user.
+ * <p>
+ * User lookup (itself briefly cached by {@link JdbcUserDetailsService}) and account status checks
+ * still run on every request - only the password comparison is cached here.
+ * <p>
+ * The whole authentication is timed as {@code notes.auth}, and the password hash on its own as
+ * {@code notes.auth.password}, so it shows how much of the total is hashing.
+ */
+class CachingAuthenticationProvider extends DaoAuthenticationProvider {
+    private final CredentialCache credentialCache;
+    private final MeterRegistry meterRegistry;
+    private final Timer passwordTimer;
+
+    CachingAuthenticationProvider(UserDetailsService userDetailsService, PasswordEncoder passwordEncoder,
+                                  CredentialCache credentialCache, MeterRegistry meterRegistry) {
+        this.credentialCache = credentialCache;
+        this.meterRegistry = meterRegistry;
+        this.passwordTimer = meterRegistry.timer("notes.auth.password");
+        setUserDetailsService(userDetailsService);
+        setPasswordEncoder(passwordEncoder);
+    }
+
+    @Override
+    public Authentication authenticate(Authentication authentication) throws AuthenticationException {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String outcome = "failure";
+        try {
+            Authentication result = super.authenticate(authentication);
+            outcome = "success";
+            return result;
+        } finally {
+            sample.stop(meterRegistry.timer("notes.auth", "method", "basic", "outcome", outcome));
+        }
+    }
+
+    @Override
+    protected void additionalAuthenticationChecks(UserDetails userDetails,
+                                                  UsernamePasswordAuthenticationToken authentication)
+            throws AuthenticationException {
+        Object credentials = authentication.getCredentials();
+        if (credentials == null) {
+            super.additionalAuthenticationChecks(userDetails, authentication);
+            return;
+        }
+
+        String rawPassword = credentials.toString();
+        String fingerprint = fingerprint(userDetails);
+        if (credentialCache.contains(userDetails.getUsername(), rawPassword, fingerprint)) {
+            return;
+        }
+
+        Timer.Sample sample = Timer.start(meterRegistry);
+        try {
+            super.additionalAuthenticationChecks(userDetails, authentication);
+        } finally {
+            sample.stop(passwordTimer);
+        }
+        credentialCache.put(userDetails.getUsername(), rawPassword, fingerprint);
+    }
+
+    /**
+     * Changes whenever the stored password hash or the granted roles change, which
+     * invalidates every cached verification made against the old values.
+     */
+    private static String fingerprint(UserDetails userDetails) {
+        String authorities = userDetails.getAuthorities().stream()
+                .map(GrantedAuthority::getAuthority)
+                .sorted()
+                .collect(Collectors.joining(","));
+        return userDetails.getPassword() + "|" + authorities;
+    }
+}
@@ -0,0 +1,187 @@
+package com.linuxwizards.simplenotesapi;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Bounded, TTL-expiring cache of successful password verifications.
+ * <p>
+ * Keys are HMAC-SHA256 digests of the username and password, salted with a random
+ * per-process key, so plaintext credentials are never kept in memory. Each entry remembers
+ * a fingerprint of the stored password hash and authorities it was verified against -
+ * if either changes, the entry no longer matches and is dropped.
+ */
+class CredentialCache {
+    private static final String MAC_ALGORITHM = "HmacSHA256";
+
+    private final int maxEntries;
+    private final Duration ttl;
+    private final Clock clock;
+    private final byte[] salt;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final LinkedHashMap<String, Entry> entries;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    private record Entry(String username, String fingerprint, long expiresAtMillis) {}
+
+    CredentialCache(int maxEntries, Duration ttl) {
+        this(maxEntries, ttl, Clock.systemUTC());
+    }
+
+    CredentialCache(int maxEntries, Duration ttl, Clock clock) {
+        this.maxEntries = maxEntries;
+        this.ttl = ttl;
+        this.clock = clock;
+        this.salt = new byte[32];
+        new SecureRandom().nextBytes(this.salt);
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                if (size() > CredentialCache.this.maxEntries) {
+                    evictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    boolean isEnabled() {
+        return maxEntries > 0 && !ttl.isZero() && !ttl.isNegative();
+    }
+
+    /**
+     * Returns true if this exact username/password pair was recently verified against
+     * the same stored credentials.
+     */
+    boolean contains(String username, String rawPassword, String fingerprint) {
+        if (!isEnabled()) {
+            return false;
+        }
+        String key = digest(username, rawPassword);
+        long now = clock.millis();
+
+        lock.lock();
+        try {
+            Entry entry = entries.get(key);
+            if (entry != null && entry.expiresAtMillis() > now && entry.fingerprint().equals(fingerprint)) {
+                hits.increment();
+                return true;
+            }
+            if (entry != null) {
+                entries.remove(key);
+                evictions.increment();
+            }
+        } finally {
+            lock.unlock();
+        }
+        misses.increment();
+        return false;
+    }
+
+    /**
+     * Returns true if this username/password pair was recently verified, against whatever stored
+     * credentials; for telling apart requests that will need a password hash. Not counted as a hit or miss.
+     */
+    boolean wasVerified(String username, String rawPassword) {
+        if (!isEnabled()) {
+            return false;
+        }
+        String key = digest(username, rawPassword);
+        long now = clock.millis();
+
+        lock.lock();
+        try {
+            Entry entry = entries.get(key);
+            return entry != null && entry.expiresAtMillis() > now;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void put(String username, String rawPassword, String fingerprint) {
+        if (!isEnabled()) {
+            return;
+        }
+        String key = digest(username, rawPassword);
+        Entry entry = new Entry(username, fingerprint, clock.millis() + ttl.toMillis());
+
+        lock.lock();
+        try {
+            entries.put(key, entry);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Drops every cached verification for the given user, e.g. after a password or role change.
+     */
+    void evict(String username) {
+        lock.lock();
+        try {
+            int before = entries.size();
+            entries.values().removeIf(entry -> entry.username().equals(username));
+            evictions.add(before - entries.size());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void evictAll() {
+        lock.lock();
+        try {
+            evictions.add(entries.size());
+            entries.clear();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    int size() {
+        lock.lock();
+        try {
+            return entries.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    long hitCount() {
+        return hits.sum();
+    }
+
+    long missCount() {
+        return misses.sum();
+    }
+
+    long evictionCount() {
+        return evictions.sum();
+    }
+
+    private String digest(String username, String rawPassword) {
+        try {
+            Mac mac = Mac.getInstance(MAC_ALGORITHM);
+            mac.init(new SecretKeySpec(salt, MAC_ALGORITHM));
+            mac.update(username.getBytes(StandardCharsets.UTF_8));
+            mac.update((byte) 0);
+            return HexFormat.of().formatHex(mac.doFinal(rawPassword.getBytes(StandardCharsets.UTF_8)));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HmacSHA256 is not available", e);
+        }
+    }
+}
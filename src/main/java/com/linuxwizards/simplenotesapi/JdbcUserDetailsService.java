@@ -0,0 +1,158 @@
+package com.linuxwizards.simplenotesapi;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Loads users from the {@code app_user} tables with a single primary key lookup, so nothing about
+ * the users has to be read or hashed at startup however many there are.
+ * <p>
+ * Recently loaded users are kept in a bounded, TTL-expiring LRU cache; a password or role change
+ * takes effect within the TTL, or at once through {@link #evict}. Unknown usernames are not cached,
+ * so made-up names can't fill it. Every call returns a new {@link UserDetails}, since Spring
+ * Security erases the password of the one it authenticated with.
+ */
+class JdbcUserDetailsService implements UserDetailsService {
+    private static final String userSql = "SELECT u.password, u.enabled, r.role FROM app_user u "
+            + "LEFT JOIN app_user_role r ON r.username = u.username WHERE u.username = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final int maxEntries;
+    private final Duration ttl;
+    private final Clock clock;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final LinkedHashMap<String, Entry> entries;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    private record Entry(String password, boolean enabled, List<String> roles, long expiresAtMillis) {}
+
+    JdbcUserDetailsService(JdbcTemplate jdbcTemplate, int maxEntries, Duration ttl) {
+        this(jdbcTemplate, maxEntries, ttl, Clock.systemUTC());
+    }
+
+    JdbcUserDetailsService(JdbcTemplate jdbcTemplate, int maxEntries, Duration ttl, Clock clock) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.maxEntries = maxEntries;
+        this.ttl = ttl;
+        this.clock = clock;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > JdbcUserDetailsService.this.maxEntries;
+            }
+        };
+    }
+
+    @Override
+    public UserDetails loadUserByUsername(String username) throws UsernameNotFoundException {
+        Entry entry = cached(username);
+        if (entry == null) {
+            misses.increment();
+            entry = load(username);
+            if (entry == null) {
+                throw new UsernameNotFoundException(username);
+            }
+            if (maxEntries > 0) {
+                lock.lock();
+                try {
+                    entries.put(username, entry);
+                } finally {
+                    lock.unlock();
+                }
+            }
+        } else {
+            hits.increment();
+        }
+        return User.withUsername(username)
+                .password(entry.password())
+                .disabled(!entry.enabled())
+                .roles(entry.roles().toArray(String[]::new))
+                .build();
+    }
+
+    private Entry cached(String username) {
+        lock.lock();
+        try {
+            Entry entry = entries.get(username);
+            if (entry != null && entry.expiresAtMillis() <= clock.millis()) {
+                entries.remove(username);
+                return null;
+            }
+            return entry;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private Entry load(String username) {
+        List<String> roles = new ArrayList<>();
+        String[] password = new String[1];
+        boolean[] enabled = new boolean[1];
+        // Users live on the first shard when notes are sharded
+        ShardContext.runOnShard(0, () -> jdbcTemplate.query(userSql, resultSet -> {
+            password[0] = resultSet.getString("password");
+            enabled[0] = resultSet.getBoolean("enabled");
+            String role = resultSet.getString("role");
+            if (role != null) {
+                roles.add(role);
+            }
+        }, username));
+        if (password[0] == null) {
+            return null;
+        }
+        return new Entry(password[0], enabled[0], List.copyOf(roles), clock.millis() + ttl.toMillis());
+    }
+
+    /**
+     * Drops the cached user, so a changed password or role applies to their next request.
+     */
+    void evict(String username) {
+        lock.lock();
+        try {
+            entries.remove(username);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void clear() {
+        lock.lock();
+        try {
+            entries.clear();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    long hitCount() {
+        return hits.sum();
+    }
+
+    long missCount() {
+        return misses.sum();
+    }
+
+    int size() {
+        lock.lock();
+        try {
+            return entries.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+}
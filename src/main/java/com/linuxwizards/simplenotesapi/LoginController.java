@@ -0,0 +1,46 @@
+package com.linuxwizards.simplenotesapi;
+
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+
+@RestController
+class LoginController {
+    private final AccessTokenService accessTokenService;
+
+    record AccessToken(String accessToken, String tokenType, long expiresAt) {}
+
+    private LoginController(AccessTokenService accessTokenService) {
+        this.accessTokenService = accessTokenService;
+    }
+
+    @GetMapping("/login")
+    private ResponseEntity<AccessToken> login(Authentication authentication) {
+        // If the user is authenticated and authorized - this will always succeed (Spring Security)
+        if (authentication instanceof AccessTokenAuthentication) {
+            // Tokens are only issued in exchange for a password, so they can't be renewed forever
+            return ResponseEntity.ok().build();
+        }
+
+        List<String> roles = authentication.getAuthorities().stream()
+                .map(GrantedAuthority::getAuthority)
+                .toList();
+        AccessTokenService.IssuedToken token = accessTokenService.issue(authentication.getName(), roles);
+
+        return ResponseEntity.ok(new AccessToken(token.token(), "Bearer", token.expiresAtMillis()));
+    }
+
+    @DeleteMapping("/login")
+    private ResponseEntity<Void> logout(Authentication authentication) {
+        if (authentication instanceof AccessTokenAuthentication tokenAuthentication) {
+            AccessTokenService.VerifiedToken token = tokenAuthentication.getToken();
+            accessTokenService.revoke(token.tokenId(), token.expiresAtMillis());
+        }
+        return ResponseEntity.noContent().build();
+    }
+}
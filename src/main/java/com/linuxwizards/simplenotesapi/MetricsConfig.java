@@ -0,0 +1,84 @@
+package com.linuxwizards.simplenotesapi;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Publishes the in-process caches, read coalescing and the change stream as metrics. Requests, repository calls and the
+ * connection pool are instrumented by Spring Boot; see the management settings in application.properties.
+ */
+@Configuration
+class MetricsConfig {
+    @Bean
+    MeterBinder credentialCacheMetrics(CredentialCache credentialCache) {
+        return registry -> {
+            FunctionCounter.builder("notes.credential.cache.requests", credentialCache, CredentialCache::hitCount)
+                    .tag("result", "hit")
+                    .register(registry);
+            FunctionCounter.builder("notes.credential.cache.requests", credentialCache, CredentialCache::missCount)
+                    .tag("result", "miss")
+                    .register(registry);
+            FunctionCounter.builder("notes.credential.cache.evictions", credentialCache,
+                            CredentialCache::evictionCount)
+                    .register(registry);
+            Gauge.builder("notes.credential.cache.size", credentialCache, CredentialCache::size)
+                    .register(registry);
+        };
+    }
+
+    @Bean
+    MeterBinder userCacheMetrics(JdbcUserDetailsService userDetailsService) {
+        return registry -> {
+            FunctionCounter.builder("notes.user.cache.requests", userDetailsService, JdbcUserDetailsService::hitCount)
+                    .tag("result", "hit")
+                    .register(registry);
+            FunctionCounter.builder("notes.user.cache.requests", userDetailsService, JdbcUserDetailsService::missCount)
+                    .tag("result", "miss")
+                    .register(registry);
+            Gauge.builder("notes.user.cache.size", userDetailsService, JdbcUserDetailsService::size)
+                    .register(registry);
+        };
+    }
+
+    @Bean
+    MeterBinder noteCacheMetrics(NoteCache noteCache) {
+        return registry -> {
+            FunctionCounter.builder("notes.cache.requests", noteCache, NoteCache::hitCount)
+                    .tag("result", "hit")
+                    .register(registry);
+            FunctionCounter.builder("notes.cache.requests", noteCache, NoteCache::missCount)
+                    .tag("result", "miss")
+                    .register(registry);
+            FunctionCounter.builder("notes.cache.evictions", noteCache, NoteCache::evictionCount)
+                    .register(registry);
+            Gauge.builder("notes.cache.weight", noteCache, NoteCache::weight)
+                    .baseUnit("bytes")
+                    .register(registry);
+        };
+    }
+
+    @Bean
+    MeterBinder singleFlightMetrics(SingleFlight singleFlight) {
+        return registry -> {
+            FunctionCounter.builder("notes.single-flight.requests", singleFlight, SingleFlight::leaderCount)
+                    .tag("role", "leader")
+                    .register(registry);
+            FunctionCounter.builder("notes.single-flight.requests", singleFlight, SingleFlight::followerCount)
+                    .tag("role", "follower")
+                    .register(registry);
+            FunctionCounter.builder("notes.single-flight.requests", singleFlight, SingleFlight::fallbackCount)
+                    .tag("role", "fallback")
+                    .register(registry);
+        };
+    }
+
+    @Bean
+    MeterBinder noteChangeStreamMetrics(NoteChangeStream noteChangeStream) {
+        return registry -> Gauge.builder("notes.stream.subscribers", noteChangeStream,
+                        NoteChangeStream::subscriberCount)
+                .register(registry);
+    }
+}
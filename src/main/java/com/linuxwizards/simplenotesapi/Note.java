@@ -1,11 +1,35 @@
 package com.linuxwizards.simplenotesapi;
 
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.PersistenceCreator;
+import org.springframework.data.annotation.Version;
 import jakarta.validation.constraints.NotNull;
 
 record Note(
         @Id Long id,
         @NotNull String title,
         @NotNull String content,
-        @NotNull String owner
-) {}
+        @NotNull String owner,
+        // Bumped on every update and exposed as the ETag, not in the JSON body
+        @Version @JsonIgnore Long version,
+        // Only set when content is a preview of a large note: the full length in UTF-8 bytes,
+        // readable from GET /notes/{id}/content. Ignored in requests.
+        @JsonInclude(JsonInclude.Include.NON_NULL) Long contentLength
+) {
+    // Both mappers have to be told which constructor to use now that there are several
+    @PersistenceCreator
+    @JsonCreator
+    Note {
+    }
+
+    Note(Long id, String title, String content, String owner) {
+        this(id, title, content, owner, null, null);
+    }
+
+    Note(Long id, String title, String content, String owner, Long version) {
+        this(id, title, content, owner, version, null);
+    }
+}
@@ -0,0 +1,20 @@
+package com.linuxwizards.simplenotesapi;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * One item of a {@code POST /notes/batch} request. {@code id} is required for updates and deletes,
+ * {@code title} and {@code content} for creates and updates.
+ */
+record NoteBatchOperation(
+        Type op,
+        Long id,
+        String title,
+        String content
+) {
+    enum Type {
+        @JsonProperty("create") CREATE,
+        @JsonProperty("update") UPDATE,
+        @JsonProperty("delete") DELETE
+    }
+}
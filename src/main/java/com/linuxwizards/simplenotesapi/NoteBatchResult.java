@@ -0,0 +1,15 @@
+package com.linuxwizards.simplenotesapi;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.net.URI;
+
+/**
+ * Outcome of one {@link NoteBatchOperation}, using the status code the single-note endpoint would return.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+record NoteBatchResult(
+        int status,
+        Long id,
+        URI location
+) {}
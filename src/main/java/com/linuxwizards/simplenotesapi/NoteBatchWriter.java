@@ -0,0 +1,201 @@
+package com.linuxwizards.simplenotesapi;
+
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Runs validated batch operations for one owner in a single transaction.
+ * <p>
+ * Consecutive operations of the same type go out as one JDBC batch, so the usual sync payload
+ * (all creates, or all updates) is a single round trip while the request order is still respected.
+ * Change events are published for every note actually written and delivered once the transaction commits.
+ * The batch's net change in usage is reserved against the owner's quota before anything is written.
+ */
+@Component
+class NoteBatchWriter {
+    private static final String insertSql =
+            "INSERT INTO note (title, content, owner) VALUES (:title, :content, :owner)";
+    // Batches only carry content that fits inline, so a note that was large no longer is
+    private static final String updateSql =
+            "UPDATE note SET title = :title, content = :content, content_length = NULL, version = version + 1 "
+                    + "WHERE id = :id AND owner = :owner";
+    private static final String deleteContentSql =
+            "DELETE FROM note_content c WHERE c.id = :id "
+                    + "AND EXISTS (SELECT 1 FROM note n WHERE n.id = c.id AND n.owner = :owner)";
+    private static final String deleteSql =
+            "DELETE FROM note WHERE id = :id AND owner = :owner";
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+    private final NoteQuota noteQuota;
+
+    NoteBatchWriter(NamedParameterJdbcTemplate jdbcTemplate, ApplicationEventPublisher eventPublisher,
+                    NoteQuota noteQuota) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.eventPublisher = eventPublisher;
+        this.noteQuota = noteQuota;
+    }
+
+    /**
+     * Returns, for each operation, the generated id for creates and the number of affected rows
+     * for updates and deletes.
+     *
+     * @throws NoteQuota.ExceededException if the batch would take the owner over a quota; nothing is written
+     */
+    @Transactional
+    long[] execute(String owner, List<NoteBatchOperation> operations) {
+        List<Long> ids = operations.stream()
+                .filter(operation -> operation.op() != NoteBatchOperation.Type.CREATE)
+                .map(NoteBatchOperation::id)
+                .distinct()
+                .toList();
+        Map<Long, NoteQuota.StoredSize> stored = noteQuota.lockSizes(owner, ids);
+        reserveUsage(owner, operations, stored);
+        long[] outcomes = new long[operations.size()];
+        // The notes are locked, so each update takes its note exactly one version further
+        Map<Long, Long> versions = new HashMap<>();
+        stored.forEach((id, size) -> versions.put(id, size.version()));
+
+        int start = 0;
+        while (start < operations.size()) {
+            NoteBatchOperation.Type type = operations.get(start).op();
+            int end = start + 1;
+            while (end < operations.size() && operations.get(end).op() == type) {
+                end++;
+            }
+
+            List<NoteBatchOperation> run = operations.subList(start, end);
+            switch (type) {
+                case CREATE -> insert(owner, run, outcomes, start);
+                case UPDATE -> {
+                    update(updateSql, owner, run, outcomes, start, versions);
+                    // Only notes that were large have stored content to remove
+                    List<NoteBatchOperation> wereLarge = run.stream()
+                            .filter(operation -> stored.containsKey(operation.id())
+                                    && stored.get(operation.id()).large())
+                            .toList();
+                    if (!wereLarge.isEmpty()) {
+                        jdbcTemplate.batchUpdate(deleteContentSql, parameters(owner, wereLarge));
+                    }
+                }
+                case DELETE -> update(deleteSql, owner, run, outcomes, start, versions);
+            }
+            start = end;
+        }
+        return outcomes;
+    }
+
+    /**
+     * Inserts notes of any owners as one JDBC batch in a single transaction and returns them with
+     * their generated ids, in the order given.
+     */
+    @Transactional
+    List<Note> create(List<Note> notes) {
+        SqlParameterSource[] parameters = notes.stream()
+                .map(note -> new MapSqlParameterSource()
+                        .addValue("title", note.title())
+                        .addValue("content", note.content())
+                        .addValue("owner", note.owner()))
+                .toArray(SqlParameterSource[]::new);
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+        jdbcTemplate.batchUpdate(insertSql, parameters, keyHolder, new String[]{"ID"});
+
+        List<Map<String, Object>> keys = keyHolder.getKeyList();
+        List<Note> created = new ArrayList<>(notes.size());
+        for (int i = 0; i < notes.size(); i++) {
+            Note note = notes.get(i);
+            long id = ((Number) keys.get(i).values().iterator().next()).longValue();
+            Note saved = new Note(id, note.title(), note.content(), note.owner(), 0L);
+            created.add(saved);
+            eventPublisher.publishEvent(NoteChangedEvent.created(saved));
+        }
+        return created;
+    }
+
+    private void reserveUsage(String owner, List<NoteBatchOperation> operations,
+                              Map<Long, NoteQuota.StoredSize> stored) {
+        // Replays the batch against the locked sizes, so repeated ids and missing notes count as they will
+        Map<Long, Long> sizes = new HashMap<>();
+        stored.forEach((id, size) -> sizes.put(id, size.bytes()));
+        long notes = 0;
+        long bytes = 0;
+        for (NoteBatchOperation operation : operations) {
+            switch (operation.op()) {
+                case CREATE -> {
+                    notes++;
+                    bytes += NoteQuota.sizeOf(operation.title(), operation.content());
+                }
+                case UPDATE -> {
+                    Long current = sizes.get(operation.id());
+                    if (current != null) {
+                        long size = NoteQuota.sizeOf(operation.title(), operation.content());
+                        bytes += size - current;
+                        sizes.put(operation.id(), size);
+                    }
+                }
+                case DELETE -> {
+                    Long current = sizes.remove(operation.id());
+                    if (current != null) {
+                        notes--;
+                        bytes -= current;
+                    }
+                }
+            }
+        }
+        noteQuota.reserveOrThrow(owner, notes, bytes);
+    }
+
+    private void insert(String owner, List<NoteBatchOperation> run, long[] outcomes, int offset) {
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+        jdbcTemplate.batchUpdate(insertSql, parameters(owner, run), keyHolder, new String[]{"ID"});
+
+        List<Map<String, Object>> keys = keyHolder.getKeyList();
+        for (int i = 0; i < run.size(); i++) {
+            long id = ((Number) keys.get(i).values().iterator().next()).longValue();
+            outcomes[offset + i] = id;
+            eventPublisher.publishEvent(NoteChangedEvent.created(
+                    new Note(id, run.get(i).title(), run.get(i).content(), owner, 0L)));
+        }
+    }
+
+    private void update(String sql, String owner, List<NoteBatchOperation> run, long[] outcomes, int offset,
+                        Map<Long, Long> versions) {
+        int[] rowCounts = jdbcTemplate.batchUpdate(sql, parameters(owner, run));
+        for (int i = 0; i < run.size(); i++) {
+            outcomes[offset + i] = rowCounts[i];
+            if (rowCounts[i] > 0) {
+                eventPublisher.publishEvent(changeEvent(owner, run.get(i), versions));
+            }
+        }
+    }
+
+    private static NoteChangedEvent changeEvent(String owner, NoteBatchOperation operation, Map<Long, Long> versions) {
+        return switch (operation.op()) {
+            case CREATE -> throw new IllegalArgumentException("Creates are published with their generated id");
+            case UPDATE -> NoteChangedEvent.updated(new Note(operation.id(), operation.title(), operation.content(),
+                    owner, versions.merge(operation.id(), 1L, Long::sum)));
+            case DELETE -> NoteChangedEvent.deleted(operation.id(), owner);
+        };
+    }
+
+    private static SqlParameterSource[] parameters(String owner, List<NoteBatchOperation> run) {
+        return run.stream()
+                .map(operation -> new MapSqlParameterSource()
+                        .addValue("id", operation.id())
+                        .addValue("title", operation.title())
+                        .addValue("content", operation.content())
+                        .addValue("owner", owner))
+                .toArray(SqlParameterSource[]::new);
+    }
+}
@@ -0,0 +1,244 @@
+package com.linuxwizards.simplenotesapi;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Read-through cache of single notes and the first pages of note lists, partitioned by owner.
+ * <p>
+ * Entries are bounded by an approximate total weight in bytes (least recently used go first) and
+ * expire after a TTL. Every committed write of an owner drops all of that owner's entries. Loads in
+ * progress are tracked per owner with a generation that writes bump, which keeps a load that started
+ * before a write from putting stale data back afterwards. The tracking is dropped as soon as the
+ * owner has no load in progress, so nothing is kept for owners beyond their cached entries.
+ */
+@Component
+class NoteCache {
+    private static final int entryOverhead = 64;
+    private static final int noteOverhead = 48;
+
+    private final long maxWeight;
+    private final Duration ttl;
+    private final Clock clock;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(256, 0.75f, true);
+    private final Map<String, Set<Key>> keysByOwner = new HashMap<>();
+    private final Map<String, Loads> loads = new HashMap<>();
+    private long weight;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    private record Key(String owner, Object key) {}
+
+    private record Entry(Object value, long weight, long expiresAtMillis) {}
+
+    private static final class Loads {
+        int inProgress;
+        long generation;
+    }
+
+    @Autowired
+    NoteCache(@Value("${notes.cache.max-weight:67108864}") long maxWeight,
+              @Value("${notes.cache.ttl:10m}") Duration ttl) {
+        this(maxWeight, ttl, Clock.systemUTC());
+    }
+
+    NoteCache(long maxWeight, Duration ttl, Clock clock) {
+        this.maxWeight = maxWeight;
+        this.ttl = ttl;
+        this.clock = clock;
+    }
+
+    Note getNote(String owner, long id, Supplier<Note> loader) {
+        return get(new Key(owner, id), loader);
+    }
+
+    /**
+     * {@code page} identifies the page within the owner's notes, e.g. its number, size and sort.
+     */
+    List<Note> getPage(String owner, Object page, Supplier<List<Note>> loader) {
+        return get(new Key(owner, page), loader);
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T get(Key key, Supplier<T> loader) {
+        if (maxWeight <= 0) {
+            return loader.get();
+        }
+
+        Loads ownerLoads;
+        long generation;
+        lock.lock();
+        try {
+            Entry entry = entries.get(key);
+            if (entry != null && entry.expiresAtMillis() > clock.millis()) {
+                hits.increment();
+                return (T) entry.value();
+            }
+            if (entry != null) {
+                removeLocked(key);
+            }
+            ownerLoads = loads.computeIfAbsent(key.owner(), owner -> new Loads());
+            ownerLoads.inProgress++;
+            generation = ownerLoads.generation;
+        } finally {
+            lock.unlock();
+        }
+
+        misses.increment();
+        T value = null;
+        try {
+            value = loader.get();
+        } finally {
+            // Misses are not cached - an unknown id costs the same either way
+            finishLoad(key, value, ownerLoads, generation);
+        }
+        return value;
+    }
+
+    private void finishLoad(Key key, Object value, Loads ownerLoads, long generation) {
+        long entryWeight = value == null ? 0 : weigh(value);
+
+        lock.lock();
+        try {
+            if (--ownerLoads.inProgress == 0) {
+                loads.remove(key.owner());
+            }
+            if (value == null || entryWeight > maxWeight) {
+                return;
+            }
+            if (ownerLoads.generation != generation) {
+                // The owner wrote while we were loading - the value may already be stale
+                return;
+            }
+            removeLocked(key);
+            entries.put(key, new Entry(value, entryWeight, clock.millis() + ttl.toMillis()));
+            keysByOwner.computeIfAbsent(key.owner(), owner -> new HashSet<>()).add(key);
+            weight += entryWeight;
+
+            Iterator<Map.Entry<Key, Entry>> eldest = entries.entrySet().iterator();
+            while (weight > maxWeight && eldest.hasNext()) {
+                Map.Entry<Key, Entry> evicted = eldest.next();
+                eldest.remove();
+                forgetLocked(evicted.getKey(), evicted.getValue());
+                evictions.increment();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Drops everything cached for the owner. Runs synchronously with the write, after it commits,
+     * so the writer's next read is always fresh.
+     */
+    void invalidate(String owner) {
+        lock.lock();
+        try {
+            Loads ownerLoads = loads.get(owner);
+            if (ownerLoads != null) {
+                ownerLoads.generation++;
+            }
+            Set<Key> keys = keysByOwner.remove(owner);
+            if (keys != null) {
+                for (Key key : keys) {
+                    Entry entry = entries.remove(key);
+                    if (entry != null) {
+                        weight -= entry.weight();
+                    }
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    void onNoteChanged(NoteChangedEvent event) {
+        invalidate(event.note().owner());
+    }
+
+    long hitCount() {
+        return hits.sum();
+    }
+
+    long missCount() {
+        return misses.sum();
+    }
+
+    long evictionCount() {
+        return evictions.sum();
+    }
+
+    int ownersLoading() {
+        lock.lock();
+        try {
+            return loads.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    long weight() {
+        lock.lock();
+        try {
+            return weight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void removeLocked(Key key) {
+        Entry entry = entries.remove(key);
+        if (entry != null) {
+            forgetLocked(key, entry);
+        }
+    }
+
+    private void forgetLocked(Key key, Entry entry) {
+        weight -= entry.weight();
+        Set<Key> keys = keysByOwner.get(key.owner());
+        if (keys != null) {
+            keys.remove(key);
+            if (keys.isEmpty()) {
+                keysByOwner.remove(key.owner());
+            }
+        }
+    }
+
+    private static long weigh(Object value) {
+        if (value instanceof Note note) {
+            return entryOverhead + weigh(note);
+        }
+        long total = entryOverhead;
+        for (Object element : (List<?>) value) {
+            total += weigh((Note) element);
+        }
+        return total;
+    }
+
+    private static long weigh(Note note) {
+        long chars = (note.title() == null ? 0 : note.title().length())
+                + (note.content() == null ? 0 : note.content().length())
+                + (note.owner() == null ? 0 : note.owner().length());
+        return noteOverhead + 2 * chars;
+    }
+}
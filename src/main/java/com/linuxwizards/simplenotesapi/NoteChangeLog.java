@@ -0,0 +1,304 @@
+package com.linuxwizards.simplenotesapi;
+
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Append-only log of note writes, so clients can sync only what changed since their last sync.
+ * <p>
+ * Every change event is written to the log inside the transaction of the write itself. A
+ * transaction's changes are collected and written just before it commits, as one JDBC batch with
+ * one query reserving all their sequence numbers, so a batch of writes costs two round trips for
+ * the log rather than two per note. Sequence numbers are reserved before the rows are inserted and
+ * tracked until the transaction completes;
+ * readers never return anything at or beyond the oldest uncommitted one, so a client can't move
+ * its high-water mark past a write that commits later with a lower number.
+ * <p>
+ * Compaction drops changes superseded by a later change of the same note, which never loses
+ * anything, and tombstones older than the retention window. Syncs from before the newest dropped
+ * tombstone could miss a delete, so they are refused and the client has to start over.
+ */
+@Component
+class NoteChangeLog {
+    private static final Logger log = LoggerFactory.getLogger(NoteChangeLog.class);
+
+    private static final String insertSql =
+            "INSERT INTO note_change (seq, note_id, owner, type, changed_at) "
+                    + "VALUES (:seq, :noteId, :owner, :type, CURRENT_TIMESTAMP)";
+    private static final String reserveSql =
+            "SELECT NEXT VALUE FOR note_change_seq FROM SYSTEM_RANGE(1, :count)";
+    private static final String changesSql =
+            "SELECT c.seq, c.note_id, c.owner, n.title, n.content, n.version, n.content_length FROM note_change c "
+                    + "LEFT JOIN note n ON n.id = c.note_id AND n.owner = c.owner "
+                    + "WHERE c.owner = :owner AND c.seq > :since AND c.seq < :until ORDER BY c.seq LIMIT :limit";
+    private static final String allChangesSql =
+            "SELECT c.seq, c.note_id, c.owner, n.title, n.content, n.version, n.content_length FROM note_change c "
+                    + "LEFT JOIN note n ON n.id = c.note_id AND n.owner = c.owner "
+                    + "WHERE c.seq > :since AND c.seq < :until ORDER BY c.seq LIMIT :limit";
+    private static final String supersededSql =
+            "DELETE FROM note_change c WHERE EXISTS "
+                    + "(SELECT 1 FROM note_change l WHERE l.note_id = c.note_id AND l.seq > c.seq)";
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectProvider<ShardRouter> shardRouter;
+    private final Duration retention;
+    private final ReentrantLock sequenceLock = new ReentrantLock();
+    private final NavigableSet<Long> uncommitted = new ConcurrentSkipListSet<>();
+    private final AtomicLong horizon = new AtomicLong();
+
+    NoteChangeLog(NamedParameterJdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate,
+                  ObjectProvider<ShardRouter> shardRouter,
+                  @Value("${notes.changes.retention:30d}") Duration retention) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.shardRouter = shardRouter;
+        this.retention = retention;
+    }
+
+    @PostConstruct
+    void loadHorizon() {
+        // With several shards, the highest horizon holds for all of them
+        forEachShard(() -> horizon.accumulateAndGet(jdbcTemplate.getJdbcTemplate()
+                .queryForObject("SELECT seq FROM note_change_horizon", Long.class), Math::max));
+    }
+
+    private void forEachShard(Runnable task) {
+        ShardRouter router = shardRouter.getIfAvailable();
+        if (router == null) {
+            task.run();
+        } else {
+            router.forEachShard(task);
+        }
+    }
+
+    long horizon() {
+        return horizon.get();
+    }
+
+    // Not a transactional listener: the row has to be part of the transaction that wrote the note
+    @EventListener
+    void onNoteChanged(NoteChangedEvent event) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            write(List.of(event)).forEach(uncommitted::remove);
+            return;
+        }
+        for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+            if (synchronization instanceof PendingChanges pending) {
+                pending.changes.add(event);
+                return;
+            }
+        }
+        PendingChanges pending = new PendingChanges();
+        pending.changes.add(event);
+        TransactionSynchronizationManager.registerSynchronization(pending);
+    }
+
+    /**
+     * Reserves sequence numbers for the changes and inserts them in the order given. The numbers
+     * stay in {@code uncommitted} until the caller removes them.
+     */
+    private List<Long> write(List<NoteChangedEvent> changes) {
+        List<Long> seqs = reserveSequence(changes.size());
+        try {
+            MapSqlParameterSource[] rows = new MapSqlParameterSource[changes.size()];
+            for (int i = 0; i < rows.length; i++) {
+                NoteChangedEvent change = changes.get(i);
+                rows[i] = new MapSqlParameterSource()
+                        .addValue("seq", seqs.get(i))
+                        .addValue("noteId", change.note().id())
+                        .addValue("owner", change.note().owner())
+                        .addValue("type", change.type().name());
+            }
+            jdbcTemplate.batchUpdate(insertSql, rows);
+        } catch (RuntimeException e) {
+            seqs.forEach(uncommitted::remove);
+            throw e;
+        }
+        return seqs;
+    }
+
+    private List<Long> reserveSequence(int count) {
+        sequenceLock.lock();
+        try {
+            // One value per row, in row order, as in the migration that created the log
+            List<Long> seqs = jdbcTemplate.queryForList(reserveSql, new MapSqlParameterSource("count", count),
+                    Long.class);
+            uncommitted.addAll(seqs);
+            return seqs;
+        } finally {
+            sequenceLock.unlock();
+        }
+    }
+
+    private long firstUncommitted() {
+        sequenceLock.lock();
+        try {
+            return uncommitted.isEmpty() ? Long.MAX_VALUE : uncommitted.first();
+        } finally {
+            sequenceLock.unlock();
+        }
+    }
+
+    /**
+     * Returns the owner's latest committed change, as a position to read changes from.
+     */
+    long highWaterMark(String owner) {
+        // Also called off request threads, so the owner picks the shard rather than the principal
+        return ShardContext.callAsOwner(owner, () -> readHighWaterMark(owner));
+    }
+
+    private long readHighWaterMark(String owner) {
+        long until = firstUncommitted();
+        Long seq = jdbcTemplate.queryForObject(
+                "SELECT MAX(seq) FROM note_change WHERE owner = :owner AND seq < :until",
+                new MapSqlParameterSource().addValue("owner", owner).addValue("until", until), Long.class);
+        return seq == null ? horizon.get() : Math.max(seq, horizon.get());
+    }
+
+    /**
+     * Returns up to {@code limit} changes of the owner after {@code since}, each note collapsed to
+     * its current state, or {@code null} if changes after {@code since} were already compacted away.
+     */
+    NoteChanges changesSince(String owner, long since, int limit) {
+        return ShardContext.callAsOwner(owner, () -> readChanges(owner, since, limit));
+    }
+
+    private NoteChanges readChanges(String owner, long since, int limit) {
+        long until = firstUncommitted();
+        // One more row than asked for tells whether there is another page
+        List<Change> rows = jdbcTemplate.query(changesSql, new MapSqlParameterSource()
+                        .addValue("owner", owner)
+                        .addValue("since", since)
+                        .addValue("until", until)
+                        .addValue("limit", limit + 1),
+                NoteChangeLog::mapChange);
+        // Checked after reading: compaction raises the horizon before it deletes anything
+        if (since < horizon.get()) {
+            return null;
+        }
+
+        boolean hasMore = rows.size() > limit;
+        if (hasMore) {
+            rows = rows.subList(0, limit);
+        }
+
+        // The join reads the current row, so older changes of the same note add nothing and
+        // a note deleted since is reported as deleted even if its tombstone is on a later page
+        Map<Long, Note> latest = new LinkedHashMap<>();
+        for (Change row : rows) {
+            latest.remove(row.noteId());
+            latest.put(row.noteId(), row.note());
+        }
+        List<Note> notes = new ArrayList<>();
+        List<Long> deleted = new ArrayList<>();
+        latest.forEach((noteId, note) -> {
+            if (note == null) {
+                deleted.add(noteId);
+            } else {
+                notes.add(note);
+            }
+        });
+
+        long highWaterMark = rows.isEmpty() ? since : rows.get(rows.size() - 1).seq();
+        return new NoteChanges(notes, deleted, highWaterMark, hasMore);
+    }
+
+    @Scheduled(fixedDelayString = "${notes.changes.compaction-interval:PT1H}",
+            initialDelayString = "${notes.changes.compaction-interval:PT1H}")
+    void compact() {
+        // One transaction per shard, since a transaction is bound to a single database
+        forEachShard(() -> transactionTemplate.executeWithoutResult(status -> compactShard()));
+    }
+
+    private void compactShard() {
+        int superseded = jdbcTemplate.getJdbcTemplate().update(supersededSql);
+
+        Timestamp cutoff = Timestamp.from(Instant.now().minus(retention));
+        Long newestExpired = jdbcTemplate.queryForObject(
+                "SELECT MAX(seq) FROM note_change WHERE type = 'DELETED' AND changed_at < :cutoff",
+                new MapSqlParameterSource("cutoff", cutoff), Long.class);
+        int expired = 0;
+        if (newestExpired != null && newestExpired > horizon.get()) {
+            horizon.accumulateAndGet(newestExpired, Math::max);
+            expired = jdbcTemplate.update("DELETE FROM note_change WHERE type = 'DELETED' AND seq <= :horizon",
+                    new MapSqlParameterSource("horizon", newestExpired));
+            jdbcTemplate.update("UPDATE note_change_horizon SET seq = :horizon",
+                    new MapSqlParameterSource("horizon", newestExpired));
+        }
+        log.info("Compacted note change log: {} superseded changes and {} tombstones removed", superseded, expired);
+    }
+
+    /**
+     * Returns up to {@code limit} committed changes of all owners after {@code since}, in log order,
+     * each with the current state of its note; {@code note} is {@code null} if the note is gone.
+     */
+    List<Change> changesAfter(long since, int limit) {
+        return jdbcTemplate.query(allChangesSql, new MapSqlParameterSource()
+                        .addValue("since", since)
+                        .addValue("until", firstUncommitted())
+                        .addValue("limit", limit),
+                NoteChangeLog::mapChange);
+    }
+
+    private static Change mapChange(ResultSet resultSet, int rowNum) throws SQLException {
+        long noteId = resultSet.getLong("note_id");
+        String title = resultSet.getString("title");
+        Note note = title == null ? null : new Note(noteId, title, resultSet.getString("content"),
+                resultSet.getString("owner"), resultSet.getLong("version"),
+                resultSet.getObject("content_length", Long.class));
+        return new Change(resultSet.getLong("seq"), noteId, note);
+    }
+
+    record Change(long seq, long noteId, Note note) {}
+
+    /**
+     * The changes of one transaction, written just before it commits.
+     */
+    private final class PendingChanges implements TransactionSynchronization {
+        final List<NoteChangedEvent> changes = new ArrayList<>();
+        private List<Long> seqs = List.of();
+
+        // Before transactional listeners, so they read the log with these changes visible
+        @Override
+        public int getOrder() {
+            return Ordered.HIGHEST_PRECEDENCE;
+        }
+
+        @Override
+        public void beforeCommit(boolean readOnly) {
+            seqs = write(changes);
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            seqs.forEach(uncommitted::remove);
+        }
+    }
+}
@@ -0,0 +1,373 @@
+package com.linuxwizards.simplenotesapi;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Pushes an owner's note changes to their open {@code GET /notes/stream} connections.
+ * <p>
+ * Connections are async requests, so an idle one holds no thread. Subscribers of the same owner
+ * share a channel that reads the {@link NoteChangeLog} once per write and fans the result out; each
+ * event carries the log's high-water mark as its id, so a reconnecting client resumes with
+ * {@code Last-Event-ID} exactly like {@code GET /notes/changes?since=}.
+ * <p>
+ * Each subscriber has a bounded buffer, drained on a virtual thread of its own while it has events,
+ * so a client that stops reading only ever blocks its own thread. A subscriber whose buffer
+ * overflows, or whose send has been stuck for longer than the send timeout, is disconnected rather
+ * than holding on to resources; it loses nothing, since it resumes from the log when it reconnects.
+ * Reads of the log run on a small pool, since each takes a database connection.
+ */
+@Component
+class NoteChangeStream {
+    private static final Logger log = LoggerFactory.getLogger(NoteChangeStream.class);
+    private static final int pageSize = 500;
+
+    private final NoteChangeLog noteChangeLog;
+    private final ObjectMapper objectMapper;
+    private final Duration timeout;
+    private final int bufferSize;
+    private final long sendTimeoutNanos;
+    private final ExecutorService pumps;
+    private final ExecutorService senders = Executors.newVirtualThreadPerTaskExecutor();
+    private final Map<String, Channel> channels = new ConcurrentHashMap<>();
+    private final Set<ResponseBodyEmitter.DataWithMediaType> heartbeat =
+            SseEmitter.event().comment("heartbeat").build();
+    // Tells the client its position was compacted away and it has to sync from scratch
+    private final Set<ResponseBodyEmitter.DataWithMediaType> reset =
+            SseEmitter.event().name("reset").data("").build();
+
+    NoteChangeStream(NoteChangeLog noteChangeLog, ObjectMapper objectMapper,
+                     @Value("${notes.stream.timeout:30m}") Duration timeout,
+                     @Value("${notes.stream.buffer-size:64}") int bufferSize,
+                     @Value("${notes.stream.send-timeout:PT30S}") Duration sendTimeout,
+                     @Value("${notes.stream.pump-threads:4}") int pumpThreads) {
+        this.noteChangeLog = noteChangeLog;
+        this.objectMapper = objectMapper;
+        this.timeout = timeout;
+        this.bufferSize = bufferSize;
+        this.sendTimeoutNanos = sendTimeout.toNanos();
+        this.pumps = Executors.newFixedThreadPool(pumpThreads);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        pumps.shutdownNow();
+        senders.shutdownNow();
+    }
+
+    /**
+     * Opens a stream of the owner's changes, first replaying those after {@code lastEventId} if given.
+     */
+    SseEmitter subscribe(String owner, Long lastEventId) {
+        SseEmitter emitter = new SseEmitter(timeout.toMillis());
+        // Live events wait until the replay is done, so the client gets everything in order
+        Subscriber subscriber = new Subscriber(emitter, lastEventId != null);
+        // Read before taking the channel's lock, which is never held for a query here
+        long highWaterMark = noteChangeLog.highWaterMark(owner);
+
+        Channel channel;
+        long replayUntil;
+        while (true) {
+            channel = channels.computeIfAbsent(owner, Channel::new);
+            channel.lock.lock();
+            try {
+                // The last subscriber may have closed this channel in the meantime
+                if (channel.closed) {
+                    continue;
+                }
+                if (channel.position < 0) {
+                    channel.position = highWaterMark;
+                }
+                // Live events start after the channel's position; the replay covers everything up to it
+                replayUntil = channel.position;
+                // Also commits the response headers, so the client sees the stream open right away
+                subscriber.offerFirst(heartbeat);
+                channel.subscribers.add(subscriber);
+                break;
+            } finally {
+                channel.lock.unlock();
+            }
+        }
+
+        Channel subscribed = channel;
+        emitter.onCompletion(() -> unsubscribe(subscribed, subscriber));
+        emitter.onTimeout(() -> unsubscribe(subscribed, subscriber));
+        emitter.onError(error -> unsubscribe(subscribed, subscriber));
+        if (lastEventId != null) {
+            replay(owner, subscriber, lastEventId, replayUntil);
+            subscriber.release();
+        }
+        return emitter;
+    }
+
+    private void replay(String owner, Subscriber subscriber, long since, long until) {
+        while (since < until) {
+            NoteChanges changes = noteChangeLog.changesSince(owner, since, pageSize);
+            if (changes == null) {
+                subscriber.offerFirst(reset);
+                return;
+            }
+            if (!changes.notes().isEmpty() || !changes.deleted().isEmpty()) {
+                subscriber.offerFirst(event(changes));
+            }
+            if (!changes.hasMore()) {
+                return;
+            }
+            since = changes.highWaterMark();
+        }
+    }
+
+    private void unsubscribe(Channel channel, Subscriber subscriber) {
+        subscriber.close();
+        channel.lock.lock();
+        try {
+            channel.subscribers.remove(subscriber);
+            if (channel.subscribers.isEmpty() && !channel.closed) {
+                channel.closed = true;
+                channels.remove(channel.owner, channel);
+            }
+        } finally {
+            channel.lock.unlock();
+        }
+    }
+
+    // After rollbacks too: a rolled back change no longer holds back the ones committed after it
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMPLETION, fallbackExecution = true)
+    void onNoteChanged(NoteChangedEvent event) {
+        Channel channel = channels.get(event.note().owner());
+        // Writes in quick succession share one read of the log
+        if (channel != null && channel.pumpScheduled.compareAndSet(false, true)) {
+            pumps.execute(() -> {
+                channel.pumpScheduled.set(false);
+                channel.lock.lock();
+                try {
+                    pump(channel);
+                } finally {
+                    channel.lock.unlock();
+                }
+            });
+        }
+    }
+
+    private void pump(Channel channel) {
+        if (channel.closed) {
+            return;
+        }
+        boolean hasMore = true;
+        while (hasMore) {
+            NoteChanges changes = noteChangeLog.changesSince(channel.owner, channel.position, pageSize);
+            if (changes == null) {
+                // Compacted past us; subscribers have to resync from scratch
+                channel.subscribers.forEach(subscriber -> subscriber.offer(reset));
+                channel.position = noteChangeLog.highWaterMark(channel.owner);
+                return;
+            }
+            if (!changes.notes().isEmpty() || !changes.deleted().isEmpty()) {
+                Set<ResponseBodyEmitter.DataWithMediaType> event = event(changes);
+                channel.subscribers.forEach(subscriber -> subscriber.offer(event));
+            }
+            channel.position = changes.highWaterMark();
+            hasMore = changes.hasMore();
+        }
+    }
+
+    private Set<ResponseBodyEmitter.DataWithMediaType> event(NoteChanges changes) {
+        try {
+            // Serialized once for all subscribers
+            return SseEmitter.event()
+                    .id(Long.toString(changes.highWaterMark()))
+                    .name("changes")
+                    .data(objectMapper.writeValueAsString(changes))
+                    .build();
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Scheduled(fixedRateString = "${notes.stream.heartbeat-interval:PT15S}")
+    void sendHeartbeats() {
+        // Keeps proxies from closing idle connections and finds clients that went away
+        long now = System.nanoTime();
+        channels.values().forEach(channel -> channel.subscribers.forEach(subscriber -> {
+            if (subscriber.isStalled(now)) {
+                log.debug("Disconnecting stream subscriber whose send has been blocked for over {} ms",
+                        sendTimeoutNanos / 1_000_000);
+                subscriber.disconnect();
+            } else {
+                subscriber.offer(heartbeat);
+            }
+        }));
+    }
+
+    int subscriberCount() {
+        return channels.values().stream().mapToInt(channel -> channel.subscribers.size()).sum();
+    }
+
+    private static final class Channel {
+        final String owner;
+        final ReentrantLock lock = new ReentrantLock();
+        final List<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+        final AtomicBoolean pumpScheduled = new AtomicBoolean();
+        long position = -1;
+        boolean closed;
+
+        Channel(String owner) {
+            this.owner = owner;
+        }
+    }
+
+    private final class Subscriber {
+        private final SseEmitter emitter;
+        private final ReentrantLock lock = new ReentrantLock();
+        private final ArrayDeque<Set<ResponseBodyEmitter.DataWithMediaType>> buffer = new ArrayDeque<>();
+        private final ArrayDeque<Set<ResponseBodyEmitter.DataWithMediaType>> held = new ArrayDeque<>();
+        private boolean holding;
+        private boolean draining;
+        private boolean closed;
+        // System.nanoTime() when the send in progress started, 0 if none is
+        private volatile long sendingSince;
+
+        Subscriber(SseEmitter emitter, boolean holding) {
+            this.emitter = emitter;
+            this.holding = holding;
+        }
+
+        /**
+         * Queues a live event, or holds it back while a replay is in progress.
+         */
+        void offer(Set<ResponseBodyEmitter.DataWithMediaType> event) {
+            lock.lock();
+            try {
+                if (!closed && !overflows()) {
+                    if (holding) {
+                        held.add(event);
+                    } else {
+                        enqueue(event);
+                    }
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * Queues an event ahead of the live events held back, such as one replayed from the log.
+         */
+        void offerFirst(Set<ResponseBodyEmitter.DataWithMediaType> event) {
+            lock.lock();
+            try {
+                if (!closed && !overflows()) {
+                    enqueue(event);
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * Ends the replay, queueing the live events held back meanwhile.
+         */
+        void release() {
+            lock.lock();
+            try {
+                holding = false;
+                if (!closed) {
+                    held.forEach(this::enqueue);
+                }
+                held.clear();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private boolean overflows() {
+            if (buffer.size() + held.size() < bufferSize) {
+                return false;
+            }
+            log.debug("Disconnecting slow stream subscriber with {} buffered events", buffer.size() + held.size());
+            disconnect();
+            return true;
+        }
+
+        private void enqueue(Set<ResponseBodyEmitter.DataWithMediaType> event) {
+            buffer.add(event);
+            if (!draining) {
+                draining = true;
+                senders.execute(this::drain);
+            }
+        }
+
+        boolean isStalled(long now) {
+            long since = sendingSince;
+            return since != 0 && now - since > sendTimeoutNanos;
+        }
+
+        void disconnect() {
+            close();
+            // Completing waits for a blocked send to give up, which must not hold up the caller
+            senders.execute(emitter::complete);
+        }
+
+        private void drain() {
+            while (true) {
+                Set<ResponseBodyEmitter.DataWithMediaType> event;
+                lock.lock();
+                try {
+                    event = closed ? null : buffer.poll();
+                    if (event == null) {
+                        draining = false;
+                        return;
+                    }
+                } finally {
+                    lock.unlock();
+                }
+
+                sendingSince = System.nanoTime();
+                try {
+                    emitter.send(event);
+                } catch (IOException | IllegalStateException e) {
+                    // The client went away; the emitter's error callback unsubscribes it
+                    close();
+                    return;
+                } finally {
+                    sendingSince = 0;
+                }
+            }
+        }
+
+        void close() {
+            lock.lock();
+            try {
+                closed = true;
+                buffer.clear();
+                held.clear();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package com.linuxwizards.simplenotesapi;
+
+/**
+ * Published after a note was created, updated or deleted. For deletions only {@code id} and
+ * {@code owner} of the note are set.
+ */
+record NoteChangedEvent(
+        Type type,
+        Note note
+) {
+    enum Type {
+        CREATED,
+        UPDATED,
+        DELETED
+    }
+
+    static NoteChangedEvent created(Note note) {
+        return new NoteChangedEvent(Type.CREATED, note);
+    }
+
+    static NoteChangedEvent updated(Note note) {
+        return new NoteChangedEvent(Type.UPDATED, note);
+    }
+
+    static NoteChangedEvent deleted(Long id, String owner) {
+        return new NoteChangedEvent(Type.DELETED, new Note(id, null, null, owner));
+    }
+}
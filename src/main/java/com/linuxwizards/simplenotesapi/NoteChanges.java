@@ -0,0 +1,14 @@
+package com.linuxwizards.simplenotesapi;
+
+import java.util.List;
+
+/**
+ * Notes created or updated and ids of notes deleted after a sequence number. Clients pass
+ * {@code highWaterMark} as {@code since} on their next sync, right away while {@code hasMore} is set.
+ */
+record NoteChanges(
+        List<Note> notes,
+        List<Long> deleted,
+        long highWaterMark,
+        boolean hasMore
+) {}
@@ -0,0 +1,289 @@
+package com.linuxwizards.simplenotesapi;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.AbstractResource;
+import org.springframework.core.io.Resource;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.sql.Blob;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Stores the content of notes too long for the {@code content} column.
+ * <p>
+ * Such notes keep a short preview inline, along with the full length in UTF-8 bytes, so lists and
+ * everything else that reads note rows stay as fast as with small notes. The full content is kept
+ * gzip-compressed in {@code note_content} and only read by {@code GET /notes/{id}/content}, as a
+ * stream: either sent as stored to clients that accept gzip, or decompressed on the fly, which is
+ * also how byte ranges are served. Small notes are stored exactly as before.
+ * <p>
+ * The stored body is read in chunks of {@code chunkSize} bytes, each with a query of its own, so a
+ * slow download never holds on to a pooled connection for longer than one chunk takes to read.
+ */
+@Component
+class NoteContentStore {
+    // Width of the content column; anything longer is stored here
+    static final int maxInlineLength = 1000;
+    private static final int chunkSize = 256 * 1024;
+
+    private static final String mergeSql = "MERGE INTO note_content (id, body) KEY (id) VALUES (?, ?)";
+    // Also checks owner and version, so a note updated since it was looked up is never mixed up with its old length
+    private static final String bodySql = "SELECT c.body FROM note_content c JOIN note n ON n.id = c.id "
+            + "WHERE c.id = ? AND n.owner = ? AND n.version = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final int maxLength;
+    private final int previewLength;
+
+    NoteContentStore(JdbcTemplate jdbcTemplate,
+                     @Value("${notes.content.max-length:16777216}") int maxLength,
+                     @Value("${notes.content.preview-length:200}") int previewLength) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.maxLength = maxLength;
+        this.previewLength = Math.min(previewLength, maxInlineLength);
+    }
+
+    static boolean isLarge(String content) {
+        return content.length() > maxInlineLength;
+    }
+
+    int maxLength() {
+        return maxLength;
+    }
+
+    /**
+     * Returns the note as its row is stored: unchanged if small, otherwise with a preview as content
+     * and the full content's length.
+     */
+    Note inlined(Note note) {
+        String content = note.content();
+        if (!isLarge(content)) {
+            return note;
+        }
+        int end = previewLength;
+        // Never split a surrogate pair
+        if (Character.isHighSurrogate(content.charAt(end - 1))) {
+            end--;
+        }
+        return new Note(note.id(), note.title(), content.substring(0, end), note.owner(), note.version(),
+                utf8Length(content));
+    }
+
+    /**
+     * Stores the full content of a note whose row was just written, in the caller's transaction,
+     * or removes what was stored for it if the content now fits inline and {@code wasLarge}.
+     */
+    void write(long id, String content, boolean wasLarge) {
+        if (isLarge(content)) {
+            jdbcTemplate.update(mergeSql, id, compress(content));
+        } else if (wasLarge) {
+            jdbcTemplate.update("DELETE FROM note_content WHERE id = ?", id);
+        }
+    }
+
+    /**
+     * Returns the full content of a large note as a resource that reads it from the database every
+     * time it is opened; as stored if {@code gzip}, decompressed otherwise.
+     */
+    Resource content(Note note, boolean gzip) {
+        return new ContentResource(note, gzip);
+    }
+
+    /**
+     * Copies the stored content of a note between databases, streaming it, or removes it from
+     * {@code to} if {@code from} has none.
+     */
+    static void copy(JdbcTemplate from, JdbcTemplate to, long id) {
+        boolean found = Boolean.TRUE.equals(from.query("SELECT body FROM note_content WHERE id = ?", resultSet -> {
+            if (!resultSet.next()) {
+                return false;
+            }
+            try (InputStream body = resultSet.getBinaryStream("body")) {
+                to.update(mergeSql, statement -> {
+                    statement.setLong(1, id);
+                    statement.setBinaryStream(2, body);
+                });
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return true;
+        }, id));
+        if (!found) {
+            to.update("DELETE FROM note_content WHERE id = ?", id);
+        }
+    }
+
+    private static byte[] compress(String content) {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (Writer writer = new OutputStreamWriter(new GZIPOutputStream(compressed, 8192), StandardCharsets.UTF_8)) {
+            writer.write(content);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return compressed.toByteArray();
+    }
+
+    static long utf8Length(String content) {
+        long length = 0;
+        for (int i = 0; i < content.length(); i++) {
+            char c = content.charAt(i);
+            if (c < 0x80) {
+                length += 1;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < content.length()
+                    && Character.isLowSurrogate(content.charAt(i + 1))) {
+                length += 4;
+                i++;
+            } else {
+                // Unpaired surrogates are encoded as '?'
+                length += Character.isSurrogate(c) ? 1 : 3;
+            }
+        }
+        return length;
+    }
+
+    /**
+     * Whether an {@code Accept-Encoding} header allows gzip.
+     */
+    static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        for (String coding : acceptEncoding.split(",")) {
+            String[] parameters = coding.split(";");
+            if (parameters[0].trim().equalsIgnoreCase("gzip")) {
+                for (int i = 1; i < parameters.length; i++) {
+                    String parameter = parameters[i].trim();
+                    if (parameter.startsWith("q=") && parameter.substring(2).matches("0(\\.0*)?")) {
+                        return false;
+                    }
+                }
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private final class ContentResource extends AbstractResource {
+        private final Note note;
+        private final boolean gzip;
+
+        ContentResource(Note note, boolean gzip) {
+            this.note = note;
+            this.gzip = gzip;
+        }
+
+        @Override
+        public boolean exists() {
+            return true;
+        }
+
+        @Override
+        public long contentLength() {
+            // The compressed length is unknown without reading the body, so gzip responses are chunked
+            return gzip ? -1 : note.contentLength();
+        }
+
+        @Override
+        public String getDescription() {
+            return "content of note " + note.id();
+        }
+
+        /**
+         * Returns a stream that reads the body from the database as it is consumed; skipping to a
+         * range only decompresses up to it.
+         */
+        @Override
+        public InputStream getInputStream() throws IOException {
+            InputStream body = new ChunkedBodyInputStream(note);
+            return gzip ? body : new GZIPInputStream(body, 8192);
+        }
+    }
+
+    /**
+     * Reads a stored body one chunk per query. Every query checks the note's version, so a note
+     * updated or deleted during the download fails the stream rather than mixing up two bodies.
+     */
+    private final class ChunkedBodyInputStream extends InputStream {
+        private final Note note;
+        private byte[] chunk = new byte[0];
+        private int position;
+        private long offset;
+        private boolean end;
+
+        ChunkedBodyInputStream(Note note) {
+            this.note = note;
+        }
+
+        @Override
+        public int read() throws IOException {
+            return fill() ? chunk[position++] & 0xff : -1;
+        }
+
+        @Override
+        public int read(byte[] buffer, int off, int length) throws IOException {
+            if (length == 0) {
+                return 0;
+            }
+            if (!fill()) {
+                return -1;
+            }
+            int count = Math.min(length, chunk.length - position);
+            System.arraycopy(chunk, position, buffer, off, count);
+            position += count;
+            return count;
+        }
+
+        private boolean fill() throws IOException {
+            if (position < chunk.length) {
+                return true;
+            }
+            if (end) {
+                return false;
+            }
+            byte[] next;
+            try {
+                next = jdbcTemplate.query(bodySql, resultSet -> {
+                    if (!resultSet.next()) {
+                        return null;
+                    }
+                    Blob blob = resultSet.getBlob("body");
+                    try {
+                        long remaining = blob.length() - offset;
+                        if (remaining <= 0) {
+                            return new byte[0];
+                        }
+                        try (InputStream part = blob.getBinaryStream(offset + 1, Math.min(remaining, chunkSize))) {
+                            return part.readAllBytes();
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    } finally {
+                        blob.free();
+                    }
+                }, note.id(), note.owner(), note.version());
+            } catch (DataAccessException | UncheckedIOException e) {
+                throw new IOException("Failed to read content of note " + note.id(), e);
+            }
+            if (next == null) {
+                throw new IOException("Note " + note.id() + " changed or was deleted while being read");
+            }
+            chunk = next;
+            position = 0;
+            offset += next.length;
+            end = next.length < chunkSize;
+            return next.length > 0;
+        }
+    }
+}
@@ -1,61 +1,315 @@
 package com.linuxwizards.simplenotesapi;
 
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.InputStreamResource;
+import org.springframework.core.io.Resource;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import org.springframework.web.util.UriComponentsBuilder;
 
+import java.io.IOException;
 import java.security.Principal;
 import java.net.URI;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeoutException;
 
 @RestController
 @RequestMapping("/notes")
 class NoteController {
     private static final int maxTitleLength = 30;
-    private static final int maxContentLength = 1000;
+    // Longer content is only accepted for single notes and stored apart, see NoteContentStore
+    private static final int maxContentLength = NoteContentStore.maxInlineLength;
     private static final int maxOwnerLength = 255;
+    private static final int defaultCursorLimit = 20;
+    private static final int maxCursorLimit = 2000;
+    private static final int maxBatchSize = 1000;
+    private static final int cachedPages = 3;
+    private static final MediaType plainText = new MediaType("text", "plain", StandardCharsets.UTF_8);
 
     private final NoteRepository noteRepository;
+    private final NoteBatchWriter noteBatchWriter;
+    private final NoteExporter noteExporter;
+    private final NoteSearchIndex noteSearchIndex;
+    private final NoteCache noteCache;
+    private final OwnerChangeCounter ownerChangeCounter;
+    private final NoteChangeLog noteChangeLog;
+    private final NoteChangeStream noteChangeStream;
+    private final NoteCreatePipeline noteCreatePipeline;
+    private final SingleFlight singleFlight;
+    private final NoteContentStore noteContentStore;
+    private final NoteQuota noteQuota;
+    private final ApplicationEventPublisher eventPublisher;
+    private final TransactionTemplate transactionTemplate;
 
-    private NoteController(NoteRepository noteRepository) {
+    private NoteController(NoteRepository noteRepository, NoteBatchWriter noteBatchWriter, NoteExporter noteExporter,
+                           NoteSearchIndex noteSearchIndex, NoteCache noteCache, OwnerChangeCounter ownerChangeCounter,
+                           NoteChangeLog noteChangeLog, NoteChangeStream noteChangeStream,
+                           NoteCreatePipeline noteCreatePipeline, SingleFlight singleFlight,
+                           NoteContentStore noteContentStore, NoteQuota noteQuota,
+                           ApplicationEventPublisher eventPublisher, TransactionTemplate transactionTemplate) {
         this.noteRepository = noteRepository;
+        this.noteBatchWriter = noteBatchWriter;
+        this.noteExporter = noteExporter;
+        this.noteSearchIndex = noteSearchIndex;
+        this.noteCache = noteCache;
+        this.ownerChangeCounter = ownerChangeCounter;
+        this.noteChangeLog = noteChangeLog;
+        this.noteChangeStream = noteChangeStream;
+        this.noteCreatePipeline = noteCreatePipeline;
+        this.singleFlight = singleFlight;
+        this.noteContentStore = noteContentStore;
+        this.noteQuota = noteQuota;
+        this.eventPublisher = eventPublisher;
+        this.transactionTemplate = transactionTemplate;
     }
 
     private Note findNote(Long requestedId, Principal principal) {
-        return noteRepository.findByIdAndOwner(requestedId, principal.getName());
+        String owner = principal.getName();
+        return noteCache.getNote(owner, requestedId, () -> noteRepository.findByIdAndOwner(requestedId, owner));
+    }
+
+    static boolean isNoteValid(String title, String content, String owner) {
+        return title != null && title.length() <= maxTitleLength
+                && content != null && content.length() <= maxContentLength
+                && owner.length() <= maxOwnerLength;
     }
 
     private boolean isNoteValid(Note noteRequest, Principal principal) {
-        return noteRequest.title().length() <= maxTitleLength
-                && noteRequest.content().length() <= maxContentLength
-                && principal.getName().length() <= maxOwnerLength;
+        String content = noteRequest.content();
+        if (content != null && NoteContentStore.isLarge(content)) {
+            return content.length() <= noteContentStore.maxLength()
+                    && isNoteValid(noteRequest.title(), "", principal.getName());
+        }
+        return isNoteValid(noteRequest.title(), content, principal.getName());
+    }
+
+    private boolean isOperationValid(NoteBatchOperation operation, Principal principal) {
+        if (operation == null || operation.op() == null) {
+            return false;
+        }
+        return switch (operation.op()) {
+            case CREATE -> isNoteValid(operation.title(), operation.content(), principal.getName());
+            case UPDATE -> operation.id() != null
+                    && isNoteValid(operation.title(), operation.content(), principal.getName());
+            case DELETE -> operation.id() != null;
+        };
     }
 
     @GetMapping("/{requestedId}")
-    private ResponseEntity<Note> findById(@PathVariable Long requestedId, Principal principal) {
-        Note note = findNote(requestedId, principal);
+    private ResponseEntity<byte[]> findById(@PathVariable Long requestedId, Principal principal, WebRequest request) {
+        SingleFlight.Result result = singleFlight.load(principal.getName(), "note:" + requestedId,
+                () -> findNote(requestedId, principal));
 
-        if (note != null) {
-            return ResponseEntity.ok(note);
+        if (result.value() != null) {
+            String eTag = NoteETags.of((Note) result.value());
+            // A matching If-None-Match is answered with 304 before the note is serialized
+            if (request.checkNotModified(eTag)) {
+                return null;
+            }
+            return ResponseEntity.ok()
+                    .eTag(eTag)
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .body(result.json());
         } else {
             return ResponseEntity.notFound().build();
         }
     }
 
+    /**
+     * Streams the full content of a note as UTF-8 text, with support for byte ranges. Large notes are
+     * sent as stored when the client accepts gzip and asks for no range. A range under an
+     * {@code If-Range} that doesn't match the current tag gets the whole content.
+     */
+    @GetMapping("/{requestedId}/content")
+    private ResponseEntity<Resource> findContent(@PathVariable Long requestedId,
+                                                 @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding,
+                                                 @RequestHeader(value = HttpHeaders.RANGE, required = false) String range,
+                                                 @RequestHeader(value = HttpHeaders.IF_RANGE, required = false) String ifRange,
+                                                 Principal principal, WebRequest request) throws IOException {
+        Note note = findNote(requestedId, principal);
+        if (note == null) {
+            return ResponseEntity.notFound().build();
+        }
+        // Ranges are of the uncompressed content, so only whole responses of large notes go out compressed
+        boolean gzip = note.contentLength() != null && range == null && NoteContentStore.acceptsGzip(acceptEncoding);
+        // Each coding has its own strong tag, so If-Range can never mix bytes of one with the other
+        String eTag = gzip ? NoteETags.ofGzipped(note) : NoteETags.of(note);
+        if (request.checkNotModified(eTag)) {
+            return null;
+        }
+
+        // Ranges are answered by Spring MVC from the resource, reading only up to the end of the range
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .eTag(eTag)
+                .contentType(plainText)
+                .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        Resource content = note.contentLength() == null
+                ? new ByteArrayResource(note.content().getBytes(StandardCharsets.UTF_8))
+                : noteContentStore.content(note, gzip);
+        if (gzip) {
+            response.header(HttpHeaders.CONTENT_ENCODING, "gzip");
+        } else if (range != null && ifRange != null && !ifRange.equals(eTag)) {
+            // Spring MVC doesn't evaluate If-Range, but never answers ranges from an InputStreamResource
+            return response.contentLength(content.contentLength()).body(new InputStreamResource(content.getInputStream()));
+        }
+        return response.body(content);
+    }
+
     @GetMapping
-    private ResponseEntity<List<Note>> findAll(Pageable pageable, Principal principal) {
-        Page<Note> page = noteRepository.findByOwner(principal.getName(),
-                PageRequest.of(
-                        pageable.getPageNumber(),
-                        pageable.getPageSize(),
-                        pageable.getSortOr(Sort.by(Sort.Direction.DESC, "id"))
-                ));
+    private ResponseEntity<byte[]> findAll(Pageable pageable,
+                                               @RequestParam(required = false) String after,
+                                               @RequestParam(required = false) Integer limit,
+                                               Principal principal, WebRequest request) {
+        // Taken before the query, so a concurrent write can only make the tag older than the body, never newer
+        String eTag = ownerChangeCounter.listETag(principal.getName());
+        if (request.checkNotModified(eTag)) {
+            return null;
+        }
+
+        if (after != null || limit != null) {
+            return findAllAfterCursor(after, limit, principal, eTag);
+        }
+
+        String owner = principal.getName();
+        PageRequest pageRequest = PageRequest.of(
+                pageable.getPageNumber(),
+                pageable.getPageSize(),
+                pageable.getSortOr(Sort.by(Sort.Direction.DESC, "id"))
+        );
 
-        return ResponseEntity.ok(page.getContent());
+        // PageRequest has value semantics, so it identifies the page in the cache and among flights
+        SingleFlight.Result result = singleFlight.load(owner, pageRequest, () -> {
+            if (pageRequest.getPageNumber() < cachedPages) {
+                return noteCache.getPage(owner, pageRequest,
+                        () -> noteRepository.findByOwner(owner, pageRequest).getContent());
+            }
+            Page<Note> page = noteRepository.findByOwner(owner, pageRequest);
+            return page.getContent();
+        });
+
+        return ResponseEntity.ok().eTag(eTag).contentType(MediaType.APPLICATION_JSON).body(result.json());
+    }
+
+    private ResponseEntity<byte[]> findAllAfterCursor(String after, Integer limit, Principal principal, String eTag) {
+        long beforeId = Long.MAX_VALUE;
+        if (after != null) {
+            Long cursorId = NoteCursor.decode(after);
+            if (cursorId == null) {
+                return ResponseEntity.badRequest().build();
+            }
+            beforeId = cursorId;
+        }
+        int pageSize = limit == null ? defaultCursorLimit : limit;
+        if (pageSize < 1 || pageSize > maxCursorLimit) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        String owner = principal.getName();
+        long pageBefore = beforeId;
+        SingleFlight.Result result = singleFlight.load(owner, "before:" + beforeId + ":" + pageSize,
+                () -> after == null
+                        ? noteCache.getPage(owner, "first:" + pageSize,
+                                () -> noteRepository.findByOwnerBeforeId(owner, Long.MAX_VALUE, pageSize))
+                        : noteRepository.findByOwnerBeforeId(owner, pageBefore, pageSize));
+        @SuppressWarnings("unchecked")
+        List<Note> notes = (List<Note>) result.value();
+
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok().eTag(eTag).contentType(MediaType.APPLICATION_JSON);
+        if (notes.size() == pageSize) {
+            response.header(NoteCursor.nextCursorHeader, NoteCursor.encode(notes.get(notes.size() - 1).id()));
+        }
+        return response.body(result.json());
+    }
+
+    @GetMapping("/search")
+    private ResponseEntity<List<Note>> search(@RequestParam String q,
+                                              @RequestParam(required = false) String after,
+                                              @RequestParam(required = false) Integer limit,
+                                              Principal principal) {
+        NoteSearchIndex.Position position = null;
+        if (after != null) {
+            position = NoteSearchIndex.Position.decode(after);
+            if (position == null) {
+                return ResponseEntity.badRequest().build();
+            }
+        }
+        int pageSize = limit == null ? defaultCursorLimit : limit;
+        if (pageSize < 1 || pageSize > maxCursorLimit) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        List<NoteSearchIndex.Hit> hits = noteSearchIndex.search(principal.getName(), q, position, pageSize);
+
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (hits.size() == pageSize) {
+            response.header(NoteCursor.nextCursorHeader, NoteSearchIndex.Position.of(hits.get(hits.size() - 1)).encode());
+        }
+        return response.body(hits.stream().map(NoteSearchIndex.Hit::note).toList());
+    }
+
+    @GetMapping("/changes")
+    private ResponseEntity<NoteChanges> findChanges(@RequestParam(required = false) Long since,
+                                                    @RequestParam(required = false) Integer limit,
+                                                    Principal principal) {
+        int pageSize = limit == null ? maxCursorLimit : limit;
+        if ((since != null && since < 0) || pageSize < 1 || pageSize > maxCursorLimit) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        // Without since the client has nothing yet, so compacted tombstones can't matter to it
+        long start = since == null ? noteChangeLog.horizon() : since;
+        NoteChanges changes = noteChangeLog.changesSince(principal.getName(), start, pageSize);
+        if (changes == null) {
+            return ResponseEntity.status(HttpStatus.GONE).build();
+        }
+        return ResponseEntity.ok(changes);
+    }
+
+    @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    private ResponseEntity<SseEmitter> stream(@RequestHeader(value = "Last-Event-ID", required = false) String lastEventId,
+                                              Principal principal) {
+        Long resumeFrom = null;
+        if (lastEventId != null) {
+            try {
+                resumeFrom = Long.parseLong(lastEventId.trim());
+            } catch (NumberFormatException e) {
+                return ResponseEntity.badRequest().build();
+            }
+            if (resumeFrom < 0) {
+                return ResponseEntity.badRequest().build();
+            }
+        }
+
+        return ResponseEntity.ok(noteChangeStream.subscribe(principal.getName(), resumeFrom));
+    }
+
+    @GetMapping("/usage")
+    private ResponseEntity<NoteUsage> usage(Principal principal) {
+        return ResponseEntity.ok(noteQuota.usage(principal.getName()));
+    }
+
+    @GetMapping(value = "/export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    private ResponseEntity<StreamingResponseBody> export(Principal principal) {
+        String owner = principal.getName();
+        StreamingResponseBody body = outputStream -> noteExporter.export(owner, outputStream);
+
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(body);
     }
 
     @PostMapping
@@ -64,8 +318,54 @@ class NoteController {
             return ResponseEntity.badRequest().build();
         }
 
-        Note noteWithOwner = new Note(null, newNoteRequest.title(), newNoteRequest.content(), principal.getName());
-        Note savedNote = noteRepository.save(noteWithOwner);
+        String owner = principal.getName();
+        Note noteWithOwner = noteContentStore.inlined(
+                new Note(null, newNoteRequest.title(), newNoteRequest.content(), owner));
+        long size = NoteQuota.sizeOf(newNoteRequest.title(), newNoteRequest.content());
+        boolean large = noteWithOwner.contentLength() != null;
+        Note savedNote;
+        // The pipeline only writes note rows; large notes are rare enough to be written directly
+        if (noteCreatePipeline.isEnabled() && !large) {
+            NoteQuota.Limit exceeded = noteQuota.reserve(owner, 1, size);
+            if (exceeded != null) {
+                return ResponseEntity.status(exceeded.status()).build();
+            }
+            CompletableFuture<Note> pending = noteCreatePipeline.submit(noteWithOwner);
+            if (pending == null) {
+                noteQuota.release(owner, 1, size);
+                return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                        .header(HttpHeaders.RETRY_AFTER, "1")
+                        .build();
+            }
+            try {
+                savedNote = pending.join();
+            } catch (RuntimeException e) {
+                // Timed out before the writer took it, or its batch rolled back: either way nothing was written
+                noteQuota.release(owner, 1, size);
+                if (e.getCause() instanceof TimeoutException) {
+                    return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                            .header(HttpHeaders.RETRY_AFTER, "1")
+                            .build();
+                }
+                throw e;
+            }
+            noteQuota.settle(owner);
+        } else {
+            try {
+                // The change log entry is written by an event listener, inside the same transaction
+                savedNote = transactionTemplate.execute(status -> {
+                    noteQuota.reserveOrThrow(owner, 1, size);
+                    Note saved = noteRepository.save(noteWithOwner);
+                    if (large) {
+                        noteContentStore.write(saved.id(), newNoteRequest.content(), false);
+                    }
+                    eventPublisher.publishEvent(NoteChangedEvent.created(saved));
+                    return saved;
+                });
+            } catch (NoteQuota.ExceededException e) {
+                return ResponseEntity.status(e.limit().status()).build();
+            }
+        }
 
         URI locationOfNewNote = ucb
                 .path("notes/{id}")
@@ -75,29 +375,131 @@ class NoteController {
         return ResponseEntity.created(locationOfNewNote).build();
     }
 
-    @PutMapping("/{requestedId}")
-    private ResponseEntity<Void> putNote(@PathVariable Long requestedId, @RequestBody Note noteUpdate, Principal principal) {
-        Note note = findNote(requestedId, principal);
-        if (note == null) {
-            return ResponseEntity.notFound().build();
+    @PostMapping("/batch")
+    private ResponseEntity<List<NoteBatchResult>> batch(@RequestBody List<NoteBatchOperation> operations,
+                                                        UriComponentsBuilder ucb, Principal principal) {
+        if (operations.size() > maxBatchSize) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        NoteBatchResult[] results = new NoteBatchResult[operations.size()];
+        List<NoteBatchOperation> validOperations = new ArrayList<>();
+        List<Integer> validIndexes = new ArrayList<>();
+        for (int i = 0; i < operations.size(); i++) {
+            if (isOperationValid(operations.get(i), principal)) {
+                validOperations.add(operations.get(i));
+                validIndexes.add(i);
+            } else {
+                Long id = operations.get(i) == null ? null : operations.get(i).id();
+                results[i] = new NoteBatchResult(400, id, null);
+            }
+        }
+
+        long[] outcomes;
+        try {
+            outcomes = noteBatchWriter.execute(principal.getName(), validOperations);
+        } catch (NoteQuota.ExceededException e) {
+            // All or nothing, like a failed batch
+            return ResponseEntity.status(e.limit().status()).build();
         }
-        Note updatedNote = new Note(note.id(), noteUpdate.title(), noteUpdate.content(), principal.getName());
 
-        if (!isNoteValid(updatedNote, principal)) {
+        for (int i = 0; i < validOperations.size(); i++) {
+            NoteBatchOperation operation = validOperations.get(i);
+            long outcome = outcomes[i];
+            results[validIndexes.get(i)] = switch (operation.op()) {
+                case CREATE -> new NoteBatchResult(201, outcome, ucb.cloneBuilder()
+                        .path("notes/{id}")
+                        .buildAndExpand(outcome)
+                        .toUri());
+                case UPDATE, DELETE -> outcome == 0
+                        ? new NoteBatchResult(404, operation.id(), null)
+                        : new NoteBatchResult(204, operation.id(), null);
+            };
+        }
+
+        return ResponseEntity.ok(Arrays.asList(results));
+    }
+
+    @PutMapping("/{requestedId}")
+    private ResponseEntity<Void> putNote(@PathVariable Long requestedId, @RequestBody Note noteUpdate,
+                                         @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+                                         Principal principal) {
+        if (!isNoteValid(noteUpdate, principal)) {
             return ResponseEntity.badRequest().build();
         }
 
-        noteRepository.save(updatedNote);
+        String owner = principal.getName();
+        Note stored = noteContentStore.inlined(new Note(requestedId, noteUpdate.title(), noteUpdate.content(), owner));
+        long size = NoteQuota.sizeOf(noteUpdate.title(), noteUpdate.content());
+        int updated;
+        try {
+            updated = transactionTemplate.execute(status -> {
+                // Locks the note, so its size can't change between here and the update
+                NoteQuota.StoredSize old = noteQuota.lockSizes(owner, List.of(requestedId)).get(requestedId);
+                int rows;
+                if (isUnconditional(ifMatch)) {
+                    rows = noteRepository.updateByIdAndOwner(requestedId, owner, stored.title(), stored.content(),
+                            stored.contentLength());
+                } else {
+                    List<Long> versions = NoteETags.parseVersions(ifMatch);
+                    rows = versions.isEmpty() ? 0 : noteRepository.updateByIdAndOwnerAndVersionIn(
+                            requestedId, owner, stored.title(), stored.content(), stored.contentLength(), versions);
+                }
+                if (rows > 0) {
+                    noteQuota.reserveOrThrow(owner, 0, size - old.bytes());
+                    noteContentStore.write(requestedId, noteUpdate.content(), old.large());
+                    // The note is locked, so the update took it exactly one version further
+                    eventPublisher.publishEvent(NoteChangedEvent.updated(new Note(requestedId, stored.title(),
+                            stored.content(), owner, old.version() + 1, stored.contentLength())));
+                }
+                return rows;
+            });
+        } catch (NoteQuota.ExceededException e) {
+            return ResponseEntity.status(e.limit().status()).build();
+        }
+        if (updated == 0) {
+            return notFoundOrPreconditionFailed(requestedId, owner, ifMatch);
+        }
         return ResponseEntity.noContent().build();
     }
 
     @DeleteMapping("/{id}")
-    private ResponseEntity<Void> deleteNote(@PathVariable Long id, Principal principal) {
-        if (!noteRepository.existsByIdAndOwner(id, principal.getName())) {
-            return ResponseEntity.notFound().build();
+    private ResponseEntity<Void> deleteNote(@PathVariable Long id,
+                                            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+                                            Principal principal) {
+        String owner = principal.getName();
+        int deleted = transactionTemplate.execute(status -> {
+            NoteQuota.StoredSize old = noteQuota.lockSizes(owner, List.of(id)).get(id);
+            int rows;
+            if (isUnconditional(ifMatch)) {
+                rows = noteRepository.deleteByIdAndOwner(id, owner);
+            } else {
+                List<Long> versions = NoteETags.parseVersions(ifMatch);
+                rows = versions.isEmpty() ? 0 : noteRepository.deleteByIdAndOwnerAndVersionIn(id, owner, versions);
+            }
+            if (rows > 0) {
+                // A reduction, so never refused
+                noteQuota.reserve(owner, -1, -old.bytes());
+                eventPublisher.publishEvent(NoteChangedEvent.deleted(id, owner));
+            }
+            return rows;
+        });
+        if (deleted == 0) {
+            return notFoundOrPreconditionFailed(id, owner, ifMatch);
         }
-
-        noteRepository.deleteById(id);
         return ResponseEntity.noContent().build();
     }
+
+    private static boolean isUnconditional(String ifMatch) {
+        // "If-Match: *" only requires the note to exist, which the owner-scoped write checks anyway
+        return ifMatch == null || ifMatch.trim().equals("*");
+    }
+
+    private ResponseEntity<Void> notFoundOrPreconditionFailed(Long id, String owner, String ifMatch) {
+        // Only reached on the rare failure path, so the extra lookup doesn't cost the happy path anything
+        if (!isUnconditional(ifMatch) && noteRepository.existsByIdAndOwner(id, owner)) {
+            return ResponseEntity.status(HttpStatus.PRECONDITION_FAILED).build();
+        }
+        return ResponseEntity.notFound().build();
+    }
 }
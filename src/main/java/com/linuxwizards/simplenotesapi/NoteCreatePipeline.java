@@ -0,0 +1,148 @@
+package com.linuxwizards.simplenotesapi;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Optional group commit for {@code POST /notes}: concurrent creates are queued and written by one
+ * writer thread in batches, each a single JDBC batch insert and a single commit.
+ * <p>
+ * A batch closes when it reaches {@code max-batch-size} or {@code max-wait} after its first note,
+ * whichever comes first, so a lone create waits at most {@code max-wait} longer than it would without
+ * the pipeline. The queue is bounded; when it is full, {@link #submit} refuses instead of letting
+ * waiting requests pile up. A create the writer hasn't taken into a batch within {@code timeout}
+ * fails with a {@link TimeoutException} and is dropped, so callers never hang on a stuck writer. Once
+ * taken, a create is no longer timed out: its note may already be committed, so the caller waits for
+ * the batch's outcome rather than being told to retry and creating it twice.
+ */
+@Component
+class NoteCreatePipeline {
+    private static final Logger log = LoggerFactory.getLogger(NoteCreatePipeline.class);
+
+    private final NoteBatchWriter noteBatchWriter;
+    private final boolean enabled;
+    private final int maxBatchSize;
+    private final long maxWaitNanos;
+    private final long timeoutNanos;
+    private final BlockingQueue<PendingCreate> queue;
+    private Thread writer;
+
+    private record PendingCreate(Note note, CompletableFuture<Note> result, AtomicBoolean claimed) {
+        /**
+         * Settles the race between the writer and the timeout: only the first to claim a create acts on it.
+         */
+        boolean claim() {
+            return claimed.compareAndSet(false, true);
+        }
+    }
+
+    NoteCreatePipeline(NoteBatchWriter noteBatchWriter,
+                       @Value("${notes.create-pipeline.enabled:false}") boolean enabled,
+                       @Value("${notes.create-pipeline.max-batch-size:256}") int maxBatchSize,
+                       @Value("${notes.create-pipeline.max-wait:2ms}") Duration maxWait,
+                       @Value("${notes.create-pipeline.queue-capacity:10000}") int queueCapacity,
+                       @Value("${notes.create-pipeline.timeout:5s}") Duration timeout) {
+        this.noteBatchWriter = noteBatchWriter;
+        this.enabled = enabled;
+        this.maxBatchSize = maxBatchSize;
+        this.maxWaitNanos = maxWait.toNanos();
+        this.timeoutNanos = timeout.toNanos();
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+    }
+
+    @PostConstruct
+    void start() {
+        if (enabled) {
+            writer = Thread.ofPlatform().name("note-create-pipeline").daemon().start(this::run);
+        }
+    }
+
+    @PreDestroy
+    void stop() throws InterruptedException {
+        if (writer != null) {
+            writer.interrupt();
+            writer.join();
+        }
+    }
+
+    boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Queues a note for creation. The returned future completes with the saved note once its batch
+     * has committed, or with a {@link TimeoutException} if the writer hasn't taken it within
+     * {@code timeout}, in which case it is never written. Returns {@code null} if the queue is full.
+     */
+    CompletableFuture<Note> submit(Note note) {
+        PendingCreate pending = new PendingCreate(note, new CompletableFuture<>(), new AtomicBoolean());
+        if (!queue.offer(pending)) {
+            return null;
+        }
+        CompletableFuture.delayedExecutor(timeoutNanos, TimeUnit.NANOSECONDS).execute(() -> {
+            if (pending.claim()) {
+                pending.result().completeExceptionally(new TimeoutException());
+            }
+        });
+        return pending.result();
+    }
+
+    private void run() {
+        List<PendingCreate> batch = new ArrayList<>(maxBatchSize);
+        try {
+            while (true) {
+                batch.add(queue.take());
+                long deadline = System.nanoTime() + maxWaitNanos;
+                while (batch.size() < maxBatchSize) {
+                    // Take whatever is already queued without waiting, then wait out the rest of max-wait
+                    if (queue.drainTo(batch, maxBatchSize - batch.size()) > 0) {
+                        continue;
+                    }
+                    long remaining = deadline - System.nanoTime();
+                    PendingCreate next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : null;
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                // Creates that timed out while queued are no longer waited for; the rest can't time out now
+                batch.removeIf(pending -> !pending.claim());
+                if (!batch.isEmpty()) {
+                    write(batch);
+                }
+                batch.clear();
+            }
+        } catch (InterruptedException e) {
+            // Shutting down: fail what is still waiting rather than leaving requests hanging
+            batch.addAll(queue);
+            batch.forEach(pending -> pending.result().completeExceptionally(e));
+        }
+    }
+
+    private void write(List<PendingCreate> batch) {
+        try {
+            List<Note> created = noteBatchWriter.create(batch.stream().map(PendingCreate::note).toList());
+            for (int i = 0; i < batch.size(); i++) {
+                batch.get(i).result().complete(created.get(i));
+            }
+        } catch (Throwable e) {
+            // Errors too: the writer thread has to survive to serve everything queued after this batch
+            log.warn("Failed to write a batch of {} notes", batch.size(), e);
+            batch.forEach(pending -> pending.result().completeExceptionally(e));
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package com.linuxwizards.simplenotesapi;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Opaque cursor for keyset pagination over notes. Clients should pass the value of the
+ * {@value #nextCursorHeader} header back as {@code ?after=} without interpreting it.
+ */
+final class NoteCursor {
+    static final String nextCursorHeader = "Next-Cursor";
+
+    private NoteCursor() {}
+
+    static String encode(long id) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(Long.toString(id).getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Returns the note id encoded in the cursor, or null if the cursor is malformed.
+     */
+    static Long decode(String cursor) {
+        try {
+            return Long.parseLong(new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
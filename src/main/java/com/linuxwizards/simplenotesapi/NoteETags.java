@@ -0,0 +1,39 @@
+package com.linuxwizards.simplenotesapi;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Entity tags of single notes, derived from the note's version: {@code "v<version>"}, and
+ * {@code "v<version>-gz"} for the gzip-coded content of large notes.
+ */
+final class NoteETags {
+    private NoteETags() {}
+
+    static String of(Note note) {
+        return "\"v" + note.version() + "\"";
+    }
+
+    static String ofGzipped(Note note) {
+        return "\"v" + note.version() + "-gz\"";
+    }
+
+    /**
+     * Returns the versions listed in an {@code If-Match} header. Tags that are weak or weren't
+     * issued by us are skipped, so they can never match.
+     */
+    static List<Long> parseVersions(String ifMatch) {
+        List<Long> versions = new ArrayList<>();
+        for (String tag : ifMatch.split(",")) {
+            tag = tag.trim();
+            if (tag.startsWith("\"v") && tag.endsWith("\"") && tag.length() > 3) {
+                try {
+                    versions.add(Long.parseLong(tag.substring(2, tag.length() - 1)));
+                } catch (NumberFormatException e) {
+                    // Not one of ours
+                }
+            }
+        }
+        return versions;
+    }
+}
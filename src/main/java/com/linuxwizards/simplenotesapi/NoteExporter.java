@@ -0,0 +1,123 @@
+package com.linuxwizards.simplenotesapi;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Streams all notes of an owner as newline-delimited JSON.
+ * <p>
+ * Rows are read with a forward-only cursor and H2's lazy query execution, and each note is written
+ * to the output as soon as it is read, so memory use does not depend on how many notes there are.
+ * Large notes are exported with their full content, decompressed straight into the output, so
+ * memory use does not depend on how long they are either.
+ */
+@Component
+class NoteExporter {
+    private static final String exportSql =
+            "SELECT n.id, n.title, n.content, n.owner, n.version, c.body FROM note n "
+                    + "LEFT JOIN note_content c ON c.id = n.id WHERE n.owner = ? ORDER BY n.id DESC";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+    private final ObjectWriter noteWriter;
+    private final int fetchSize;
+
+    NoteExporter(JdbcTemplate jdbcTemplate, ObjectMapper objectMapper,
+                 @Value("${notes.export.fetch-size:500}") int fetchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.objectMapper = objectMapper;
+        this.noteWriter = objectMapper.writerFor(Note.class)
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        this.fetchSize = fetchSize;
+    }
+
+    void export(String owner, OutputStream outputStream) throws IOException {
+        JsonGenerator generator = objectMapper.getFactory().createGenerator(outputStream);
+        generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        generator.setRootValueSeparator(null);
+
+        try {
+            jdbcTemplate.execute((Connection connection) -> {
+                setLazyQueryExecution(connection, true);
+                try (PreparedStatement statement = connection.prepareStatement(exportSql,
+                        ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+                    statement.setFetchSize(fetchSize);
+                    statement.setString(1, owner);
+                    try (ResultSet resultSet = statement.executeQuery()) {
+                        while (resultSet.next()) {
+                            Note note = new Note(
+                                    resultSet.getLong("id"),
+                                    resultSet.getString("title"),
+                                    resultSet.getString("content"),
+                                    resultSet.getString("owner"),
+                                    resultSet.getLong("version"));
+                            InputStream body = resultSet.getBinaryStream("body");
+                            if (body == null) {
+                                writeNote(generator, note);
+                            } else {
+                                writeLargeNote(generator, note, body);
+                            }
+                        }
+                    }
+                } finally {
+                    setLazyQueryExecution(connection, false);
+                }
+                return null;
+            });
+        } catch (UncheckedIOException e) {
+            // Usually the client went away mid-export
+            throw e.getCause();
+        }
+        generator.flush();
+    }
+
+    private void writeNote(JsonGenerator generator, Note note) {
+        try {
+            noteWriter.writeValue(generator, note);
+            generator.writeRaw('\n');
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // Same fields as the serialized Note, with the content copied over from the stored body
+    private static void writeLargeNote(JsonGenerator generator, Note note, InputStream body) {
+        try (Reader content = new InputStreamReader(new GZIPInputStream(body, 8192), StandardCharsets.UTF_8)) {
+            generator.writeStartObject();
+            generator.writeNumberField("id", note.id());
+            generator.writeStringField("title", note.title());
+            generator.writeFieldName("content");
+            generator.writeString(content, -1);
+            generator.writeStringField("owner", note.owner());
+            generator.writeEndObject();
+            generator.writeRaw('\n');
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void setLazyQueryExecution(Connection connection, boolean enabled) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("SET LAZY_QUERY_EXECUTION " + enabled);
+        }
+    }
+}
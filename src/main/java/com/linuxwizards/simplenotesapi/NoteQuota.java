@@ -0,0 +1,302 @@
+package com.linuxwizards.simplenotesapi;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Keeps count of each owner's notes and their size in UTF-8 bytes, and enforces the quotas on both.
+ * <p>
+ * An owner's usage is read from the note table on their first write or usage request, and from then
+ * on kept in memory. Writes reserve their change in usage in the same transaction that writes the
+ * notes: the check against the quota and the update are a single atomic step, so parallel writes can
+ * neither get past the quota together nor lose an update. A transaction that rolls back gives its
+ * reservation back. Reading usage is therefore a lookup, never a query.
+ * <p>
+ * Changes made to the database directly are caught up with by a periodic reconciliation, which only
+ * touches owners with no write in progress, so it can never undo a reservation. Owners who haven't
+ * been looked up for the idle-eviction interval are dropped instead of queried, and read again on
+ * their next write, so memory and reconciliation grow with active owners rather than all owners.
+ */
+@Component
+class NoteQuota {
+    private static final Logger log = LoggerFactory.getLogger(NoteQuota.class);
+
+    private static final String noteSize = "OCTET_LENGTH(title) + COALESCE(content_length, OCTET_LENGTH(content))";
+    private static final String usageSql =
+            "SELECT COUNT(*) AS notes, COALESCE(SUM(" + noteSize + "), 0) AS bytes FROM note WHERE owner = :owner";
+    private static final String sizesSql = "SELECT id, " + noteSize + " AS size, content_length IS NOT NULL AS large, version "
+            + "FROM note WHERE owner = :owner AND id IN (:ids) FOR UPDATE";
+
+    enum Limit {
+        NOTES(HttpStatus.TOO_MANY_REQUESTS),
+        BYTES(HttpStatus.PAYLOAD_TOO_LARGE);
+
+        private final HttpStatus status;
+
+        Limit(HttpStatus status) {
+            this.status = status;
+        }
+
+        HttpStatus status() {
+            return status;
+        }
+    }
+
+    /**
+     * Size of a stored note as counted against the quota, whether its full content is stored
+     * separately by {@link NoteContentStore}, and its version, which the lock keeps from changing.
+     */
+    record StoredSize(long bytes, boolean large, long version) {}
+
+    /**
+     * Thrown from inside a transaction to roll back writes that would exceed the quota.
+     */
+    static class ExceededException extends RuntimeException {
+        private final Limit limit;
+
+        ExceededException(Limit limit) {
+            super("Note quota exceeded: " + limit, null, false, false);
+            this.limit = limit;
+        }
+
+        Limit limit() {
+            return limit;
+        }
+    }
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final long maxNotes;
+    private final long maxBytes;
+    private final long idleEvictionNanos;
+    private final Map<String, Usage> usages = new ConcurrentHashMap<>();
+    private final Map<Limit, Counter> rejected = new EnumMap<>(Limit.class);
+
+    NoteQuota(NamedParameterJdbcTemplate jdbcTemplate, MeterRegistry meterRegistry,
+              @Value("${notes.quota.max-notes:100000}") long maxNotes,
+              @Value("${notes.quota.max-bytes:268435456}") long maxBytes,
+              @Value("${notes.quota.idle-eviction:PT1H}") Duration idleEviction) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.maxNotes = maxNotes;
+        this.maxBytes = maxBytes;
+        this.idleEvictionNanos = idleEviction.toNanos();
+        for (Limit limit : Limit.values()) {
+            rejected.put(limit, meterRegistry.counter("notes.quota.rejected", "limit", limit.name().toLowerCase()));
+        }
+    }
+
+    /**
+     * Size of a note as counted against the quota: title and full content in UTF-8 bytes.
+     */
+    static long sizeOf(String title, String content) {
+        return NoteContentStore.utf8Length(title) + NoteContentStore.utf8Length(content);
+    }
+
+    NoteUsage usage(String owner) {
+        Usage usage = loaded(owner);
+        return new NoteUsage(usage.notes.get(), usage.bytes.get(), maxNotes, maxBytes);
+    }
+
+    /**
+     * Returns the current sizes of those of the owner's notes that exist, and locks them until the
+     * transaction ends, so the difference a write makes to their size can't change in the meantime.
+     * Also loads the owner's usage, which has to happen before the transaction writes anything.
+     */
+    Map<Long, StoredSize> lockSizes(String owner, Collection<Long> ids) {
+        loaded(owner);
+        Map<Long, StoredSize> sizes = new HashMap<>();
+        if (!ids.isEmpty()) {
+            jdbcTemplate.query(sizesSql, new MapSqlParameterSource().addValue("owner", owner).addValue("ids", ids),
+                    resultSet -> {
+                        sizes.put(resultSet.getLong("id"),
+                                new StoredSize(resultSet.getLong("size"), resultSet.getBoolean("large"),
+                                        resultSet.getLong("version")));
+                    });
+        }
+        return sizes;
+    }
+
+    /**
+     * Adds a change to the owner's usage unless it would take them over a quota, in which case the
+     * limit is returned and nothing changes. Reductions are always accepted.
+     * <p>
+     * In a transaction, the change is taken back if it rolls back. Outside one, the caller has to
+     * follow up with {@link #settle} once the write is done, or with {@link #release} if it failed.
+     */
+    Limit reserve(String owner, long notes, long bytes) {
+        Usage usage = pinned(owner);
+        usage.reservations.incrementAndGet();
+        if (!tryAdd(usage.notes, notes, maxNotes)) {
+            usage.inFlight.decrementAndGet();
+            rejected.get(Limit.NOTES).increment();
+            return Limit.NOTES;
+        }
+        if (!tryAdd(usage.bytes, bytes, maxBytes)) {
+            usage.notes.addAndGet(-notes);
+            usage.inFlight.decrementAndGet();
+            rejected.get(Limit.BYTES).increment();
+            return Limit.BYTES;
+        }
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status == STATUS_COMMITTED) {
+                        settle(owner);
+                    } else {
+                        release(owner, notes, bytes);
+                    }
+                }
+            });
+        }
+        return null;
+    }
+
+    /**
+     * Like {@link #reserve}, but throws if over quota, rolling back the surrounding transaction.
+     */
+    void reserveOrThrow(String owner, long notes, long bytes) {
+        Limit exceeded = reserve(owner, notes, bytes);
+        if (exceeded != null) {
+            throw new ExceededException(exceeded);
+        }
+    }
+
+    /**
+     * Marks a reservation made outside a transaction as written.
+     */
+    void settle(String owner) {
+        usages.get(owner).inFlight.decrementAndGet();
+    }
+
+    /**
+     * Takes back a reservation whose write did not happen.
+     */
+    void release(String owner, long notes, long bytes) {
+        Usage usage = usages.get(owner);
+        usage.notes.addAndGet(-notes);
+        usage.bytes.addAndGet(-bytes);
+        usage.inFlight.decrementAndGet();
+    }
+
+    private static boolean tryAdd(AtomicLong counter, long delta, long max) {
+        if (delta <= 0 || max <= 0) {
+            counter.addAndGet(delta);
+            return true;
+        }
+        long current;
+        do {
+            current = counter.get();
+            if (current + delta > max) {
+                return false;
+            }
+        } while (!counter.compareAndSet(current, current + delta));
+        return true;
+    }
+
+    /**
+     * Returns the owner's usage with one more write in flight, which keeps it from being evicted until
+     * the write is settled or released.
+     */
+    private Usage pinned(String owner) {
+        while (true) {
+            Usage usage = loaded(owner);
+            // Under the bin lock, which eviction takes too: it has either dropped this entry already,
+            // in which case the next round loads a new one, or it will see the write in flight
+            Usage current = usages.computeIfPresent(owner, (key, value) -> {
+                if (value == usage) {
+                    value.inFlight.incrementAndGet();
+                }
+                return value;
+            });
+            if (current == usage) {
+                return usage;
+            }
+        }
+    }
+
+    private Usage loaded(String owner) {
+        Usage usage = usages.computeIfAbsent(owner, key -> new Usage());
+        usage.lastUsed = System.nanoTime();
+        if (!usage.loaded) {
+            // Outside computeIfAbsent, so loading one owner doesn't hold up others in the same bin
+            usage.loadLock.lock();
+            try {
+                if (!usage.loaded) {
+                    long[] counts = count(owner);
+                    usage.notes.set(counts[0]);
+                    usage.bytes.set(counts[1]);
+                    usage.loaded = true;
+                }
+            } finally {
+                usage.loadLock.unlock();
+            }
+        }
+        return usage;
+    }
+
+    private long[] count(String owner) {
+        // Also called off request threads, so the owner picks the shard rather than the principal
+        return ShardContext.callAsOwner(owner, () -> jdbcTemplate.queryForObject(usageSql,
+                new MapSqlParameterSource("owner", owner),
+                (resultSet, rowNum) -> new long[]{resultSet.getLong("notes"), resultSet.getLong("bytes")}));
+    }
+
+    @Scheduled(fixedDelayString = "${notes.quota.reconcile-interval:PT10M}",
+            initialDelayString = "${notes.quota.reconcile-interval:PT10M}")
+    void reconcile() {
+        for (Map.Entry<String, Usage> entry : usages.entrySet()) {
+            Usage usage = entry.getValue();
+            if (!usage.loaded || usage.inFlight.get() > 0) {
+                continue;
+            }
+            if (System.nanoTime() - usage.lastUsed >= idleEvictionNanos) {
+                usages.computeIfPresent(entry.getKey(),
+                        (key, value) -> value == usage && value.inFlight.get() == 0 ? null : value);
+                continue;
+            }
+            long reservations = usage.reservations.get();
+            long notes = usage.notes.get();
+            long bytes = usage.bytes.get();
+            long[] counts = count(entry.getKey());
+            // Only if no write started meanwhile; one starting right now changes the counters and fails the CAS
+            if (usage.inFlight.get() == 0 && usage.reservations.get() == reservations
+                    && (counts[0] != notes || counts[1] != bytes)) {
+                usage.notes.compareAndSet(notes, counts[0]);
+                usage.bytes.compareAndSet(bytes, counts[1]);
+                log.info("Corrected usage of {} from {} notes, {} bytes to {} notes, {} bytes",
+                        entry.getKey(), notes, bytes, counts[0], counts[1]);
+            }
+        }
+    }
+
+    private static final class Usage {
+        final AtomicLong notes = new AtomicLong();
+        final AtomicLong bytes = new AtomicLong();
+        final AtomicInteger inFlight = new AtomicInteger();
+        final AtomicLong reservations = new AtomicLong();
+        final ReentrantLock loadLock = new ReentrantLock();
+        volatile boolean loaded;
+        volatile long lastUsed;
+    }
+}
@@ -0,0 +1,85 @@
+package com.linuxwizards.simplenotesapi;
+
+import jakarta.annotation.PostConstruct;
+import org.flywaydb.core.Flyway;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import javax.sql.DataSource;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Keeps a replica database in step with the primary by replaying the {@link NoteChangeLog}, for
+ * running with a read replica locally and in tests. Only changes that have committed are replayed,
+ * in log order, so the replica is always a consistent, possibly slightly older, copy.
+ */
+class NoteReplicator {
+    private static final Logger log = LoggerFactory.getLogger(NoteReplicator.class);
+    private static final int batchSize = 1000;
+
+    private final NoteChangeLog noteChangeLog;
+    private final JdbcTemplate primary;
+    private final DataSource replicaDataSource;
+    private final JdbcTemplate replica;
+    private final ReentrantLock lock = new ReentrantLock();
+    private long position;
+
+    NoteReplicator(NoteChangeLog noteChangeLog, JdbcTemplate primary, DataSource replicaDataSource) {
+        this.noteChangeLog = noteChangeLog;
+        this.primary = primary;
+        this.replicaDataSource = replicaDataSource;
+        this.replica = new JdbcTemplate(replicaDataSource);
+    }
+
+    @PostConstruct
+    void migrateReplica() {
+        Flyway.configure()
+                .dataSource(replicaDataSource)
+                .locations("classpath:db/migration")
+                .load()
+                .migrate();
+    }
+
+    /**
+     * Applies every change committed since the last sync and returns how many were applied.
+     */
+    @Scheduled(fixedDelayString = "${notes.replica.sync-interval:PT0.1S}")
+    int sync() {
+        lock.lock();
+        try {
+            int applied = 0;
+            List<NoteChangeLog.Change> changes;
+            do {
+                changes = noteChangeLog.changesAfter(position, batchSize);
+                for (NoteChangeLog.Change change : changes) {
+                    Note note = change.note();
+                    if (note == null) {
+                        replica.update("DELETE FROM note WHERE id = ?", change.noteId());
+                    } else {
+                        replica.update("MERGE INTO note (id, title, content, owner, version, content_length) KEY (id) "
+                                        + "VALUES (?, ?, ?, ?, ?, ?)",
+                                note.id(), note.title(), note.content(), note.owner(), note.version(),
+                                note.contentLength());
+                        // May already be newer than the row, which a later change in the log catches up with
+                        if (note.contentLength() != null) {
+                            NoteContentStore.copy(primary, replica, note.id());
+                        } else {
+                            replica.update("DELETE FROM note_content WHERE id = ?", note.id());
+                        }
+                    }
+                    position = change.seq();
+                }
+                applied += changes.size();
+            } while (changes.size() == batchSize);
+            if (applied > 0) {
+                log.debug("Replicated {} note changes up to {}", applied, position);
+            }
+            return applied;
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -1,13 +1,50 @@
 package com.linuxwizards.simplenotesapi;
 
+import org.springframework.data.jdbc.repository.query.Modifying;
+import org.springframework.data.jdbc.repository.query.Query;
 import org.springframework.data.repository.CrudRepository;
 import org.springframework.data.repository.PagingAndSortingRepository;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Collection;
+import java.util.List;
 
 interface NoteRepository extends CrudRepository<Note, Long>, PagingAndSortingRepository<Note, Long> {
+    // Read-only transactions may be served by the read replica, see ReplicaRoutingDataSource
+    @Transactional(readOnly = true)
     Note findByIdAndOwner(Long id, String owner);
+    @Transactional(readOnly = true)
     Page<Note> findByOwner(String owner, PageRequest pageRequest);
 
+    // Keyset page on the default id DESC order - a single range scan, no OFFSET and no COUNT
+    @Transactional(readOnly = true)
+    @Query("SELECT * FROM note WHERE owner = :owner AND id < :beforeId ORDER BY id DESC LIMIT :limit")
+    List<Note> findByOwnerBeforeId(String owner, long beforeId, int limit);
+
+    @Transactional(readOnly = true)
     boolean existsByIdAndOwner(Long id, String owner);
+
+    // Owner-scoped writes in a single statement - the row count tells whether the note was found
+    @Modifying
+    // Content is the preview of large notes, see NoteContentStore
+    @Query("UPDATE note SET title = :title, content = :content, content_length = :contentLength, version = version + 1 "
+            + "WHERE id = :id AND owner = :owner")
+    int updateByIdAndOwner(Long id, String owner, String title, String content, Long contentLength);
+
+    @Modifying
+    @Query("DELETE FROM note WHERE id = :id AND owner = :owner")
+    int deleteByIdAndOwner(Long id, String owner);
+
+    // Conditional variants for If-Match - only write if the note is still at one of the given versions
+    @Modifying
+    @Query("UPDATE note SET title = :title, content = :content, content_length = :contentLength, version = version + 1 "
+            + "WHERE id = :id AND owner = :owner AND version IN (:versions)")
+    int updateByIdAndOwnerAndVersionIn(Long id, String owner, String title, String content, Long contentLength,
+                                       Collection<Long> versions);
+
+    @Modifying
+    @Query("DELETE FROM note WHERE id = :id AND owner = :owner AND version IN (:versions)")
+    int deleteByIdAndOwnerAndVersionIn(Long id, String owner, Collection<Long> versions);
 }
@@ -0,0 +1,289 @@
+package com.linuxwizards.simplenotesapi;
+
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Pattern;
+
+/**
+ * In-memory inverted index over note titles and contents, partitioned by owner.
+ * <p>
+ * Every query term must match a word of the note, either exactly or as a prefix. Results are
+ * ranked with BM25, where title words count double and prefix matches count half. Each owner has
+ * their own term dictionary and lock, so owners never see or block each other.
+ * <p>
+ * Changes can arrive out of order: they are applied after commit on whichever thread committed, and
+ * a rebuild reads rows that live changes may already have overtaken. A note is therefore never
+ * replaced by an older version of itself, and deleted notes leave a tombstone that keeps them from
+ * being indexed again for at least a minute, and until the end of a rebuild that is under way.
+ */
+@Component
+class NoteSearchIndex {
+    private static final Pattern separator = Pattern.compile("[^\\p{L}\\p{N}]+");
+    private static final int titleWeight = 2;
+    private static final double prefixWeight = 0.5;
+    private static final double k1 = 1.2;
+    private static final double b = 0.75;
+    // Far longer than it takes the listeners of two commits to overtake each other
+    private static final long tombstoneNanos = TimeUnit.MINUTES.toNanos(1);
+
+    private final Map<String, OwnerIndex> owners = new ConcurrentHashMap<>();
+    private volatile boolean rebuilding;
+
+    record Hit(Note note, double score) {}
+
+    /**
+     * Position of a hit in the ranked results, used as an opaque paging cursor.
+     */
+    record Position(double score, long id) {
+        String encode() {
+            String position = Double.toString(score) + ":" + id;
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(position.getBytes(StandardCharsets.UTF_8));
+        }
+
+        /**
+         * Returns the position encoded in the cursor, or null if the cursor is malformed.
+         */
+        static Position decode(String cursor) {
+            try {
+                String position = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+                int colon = position.indexOf(':');
+                if (colon < 0) {
+                    return null;
+                }
+                return new Position(Double.parseDouble(position.substring(0, colon)),
+                        Long.parseLong(position.substring(colon + 1)));
+            } catch (IllegalArgumentException e) {
+                return null;
+            }
+        }
+
+        static Position of(Hit hit) {
+            return new Position(hit.score(), hit.note().id());
+        }
+    }
+
+    private static final Comparator<Hit> ranking = Comparator.comparingDouble(Hit::score).reversed()
+            .thenComparing(hit -> hit.note().id(), Comparator.reverseOrder());
+
+    private static boolean isRankedAfter(Hit hit, Position position) {
+        return hit.score() < position.score()
+                || (hit.score() == position.score() && hit.note().id() < position.id());
+    }
+
+    void index(Note note) {
+        owners.computeIfAbsent(note.owner(), owner -> new OwnerIndex()).put(note);
+    }
+
+    void remove(String owner, long id) {
+        owners.computeIfAbsent(owner, key -> new OwnerIndex()).remove(id);
+    }
+
+    /**
+     * Empties the index for a rebuild. Until {@link #endRebuild}, tombstones are kept however old they get.
+     */
+    void beginRebuild() {
+        rebuilding = true;
+        owners.clear();
+    }
+
+    void endRebuild() {
+        rebuilding = false;
+    }
+
+    @Scheduled(fixedDelayString = "PT1M")
+    void removeExpiredTombstones() {
+        if (rebuilding) {
+            return;
+        }
+        long cutoff = System.nanoTime() - tombstoneNanos;
+        owners.values().forEach(ownerIndex -> ownerIndex.removeTombstonesBefore(cutoff));
+    }
+
+    /**
+     * Returns up to {@code limit} of the owner's notes matching every term of the query, best first,
+     * starting after {@code after} (or from the top if null).
+     */
+    List<Hit> search(String owner, String query, Position after, int limit) {
+        OwnerIndex ownerIndex = owners.get(owner);
+        List<String> terms = tokenize(query);
+        if (ownerIndex == null || terms.isEmpty()) {
+            return List.of();
+        }
+        return ownerIndex.search(new ArrayList<>(new LinkedHashSet<>(terms)), after, limit);
+    }
+
+    static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null) {
+            return tokens;
+        }
+        for (String token : separator.split(text.toLowerCase(Locale.ROOT))) {
+            if (!token.isEmpty()) {
+                tokens.add(token);
+            }
+        }
+        return tokens;
+    }
+
+    private static class Document {
+        final Note note;
+        final Map<String, Integer> termFrequencies;
+        final int length;
+
+        Document(Note note) {
+            this.note = note;
+            this.termFrequencies = new HashMap<>();
+            int length = 0;
+            for (String term : tokenize(note.title())) {
+                termFrequencies.merge(term, titleWeight, Integer::sum);
+                length += titleWeight;
+            }
+            for (String term : tokenize(note.content())) {
+                termFrequencies.merge(term, 1, Integer::sum);
+                length++;
+            }
+            this.length = length;
+        }
+    }
+
+    private static class OwnerIndex {
+        private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+        private final Map<Long, Document> documents = new HashMap<>();
+        private final TreeMap<String, Map<Long, Integer>> postings = new TreeMap<>();
+        // Deleted ids and when they were deleted, oldest first
+        private final LinkedHashMap<Long, Long> tombstones = new LinkedHashMap<>();
+        private long totalLength;
+
+        void put(Note note) {
+            Document document = new Document(note);
+            lock.writeLock().lock();
+            try {
+                Document current = documents.get(note.id());
+                if (tombstones.containsKey(note.id()) || (current != null && isOlder(note, current.note))) {
+                    return;
+                }
+                removeLocked(note.id());
+                documents.put(note.id(), document);
+                totalLength += document.length;
+                document.termFrequencies.forEach((term, frequency) ->
+                        postings.computeIfAbsent(term, t -> new HashMap<>()).put(note.id(), frequency));
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        void remove(long id) {
+            lock.writeLock().lock();
+            try {
+                removeLocked(id);
+                tombstones.put(id, System.nanoTime());
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        void removeTombstonesBefore(long cutoff) {
+            lock.writeLock().lock();
+            try {
+                Iterator<Long> removedAt = tombstones.values().iterator();
+                while (removedAt.hasNext() && removedAt.next() - cutoff < 0) {
+                    removedAt.remove();
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        // Notes without a version, such as those of tests, always replace what is there
+        private static boolean isOlder(Note note, Note current) {
+            return note.version() != null && current.version() != null && note.version() < current.version();
+        }
+
+        private void removeLocked(long id) {
+            Document document = documents.remove(id);
+            if (document == null) {
+                return;
+            }
+            totalLength -= document.length;
+            for (String term : document.termFrequencies.keySet()) {
+                Map<Long, Integer> posting = postings.get(term);
+                posting.remove(id);
+                if (posting.isEmpty()) {
+                    postings.remove(term);
+                }
+            }
+        }
+
+        List<Hit> search(List<String> terms, Position after, int limit) {
+            lock.readLock().lock();
+            try {
+                int documentCount = documents.size();
+                double averageLength = documentCount == 0 ? 1 : (double) totalLength / documentCount;
+
+                Map<Long, Double> scores = null;
+                for (String term : terms) {
+                    Map<Long, Double> termScores = score(term, documentCount, averageLength);
+                    if (scores == null) {
+                        scores = termScores;
+                    } else {
+                        // Every query term has to match
+                        scores.keySet().retainAll(termScores.keySet());
+                        scores.replaceAll((id, score) -> score + termScores.get(id));
+                    }
+                    if (scores.isEmpty()) {
+                        return List.of();
+                    }
+                }
+
+                List<Hit> hits = new ArrayList<>();
+                for (Map.Entry<Long, Double> entry : scores.entrySet()) {
+                    Hit hit = new Hit(documents.get(entry.getKey()).note, entry.getValue());
+                    if (after == null || isRankedAfter(hit, after)) {
+                        hits.add(hit);
+                    }
+                }
+                hits.sort(ranking);
+                return hits.size() > limit ? new ArrayList<>(hits.subList(0, limit)) : hits;
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        private Map<Long, Double> score(String term, int documentCount, double averageLength) {
+            Map<Long, Double> scores = new HashMap<>();
+            NavigableMap<String, Map<Long, Integer>> matches = postings.subMap(term, true, term + Character.MAX_VALUE, true);
+            for (Map.Entry<String, Map<Long, Integer>> match : matches.entrySet()) {
+                Map<Long, Integer> posting = match.getValue();
+                double weight = match.getKey().equals(term) ? 1 : prefixWeight;
+                double idf = Math.log(1 + (documentCount - posting.size() + 0.5) / (posting.size() + 0.5));
+
+                for (Map.Entry<Long, Integer> entry : posting.entrySet()) {
+                    int frequency = entry.getValue();
+                    int length = documents.get(entry.getKey()).length;
+                    double tf = frequency * (k1 + 1) / (frequency + k1 * (1 - b + b * length / averageLength));
+                    // A note matching through several expansions of a prefix keeps its best match
+                    scores.merge(entry.getKey(), weight * idf * tf, Math::max);
+                }
+            }
+            return scores;
+        }
+    }
+}
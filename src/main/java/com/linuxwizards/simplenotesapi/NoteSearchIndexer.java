@@ -0,0 +1,67 @@
+package com.linuxwizards.simplenotesapi;
+
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+/**
+ * Builds the {@link NoteSearchIndex} from the note table at startup and keeps it in step with
+ * committed writes. Events carry the version each write left the note at, which the index uses to
+ * ignore changes that arrive after a newer one.
+ */
+@Component
+class NoteSearchIndexer {
+    private static final Logger log = LoggerFactory.getLogger(NoteSearchIndexer.class);
+
+    private final NoteSearchIndex noteSearchIndex;
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectProvider<ShardRouter> shardRouter;
+
+    NoteSearchIndexer(NoteSearchIndex noteSearchIndex, JdbcTemplate jdbcTemplate,
+                      ObjectProvider<ShardRouter> shardRouter) {
+        this.noteSearchIndex = noteSearchIndex;
+        this.jdbcTemplate = jdbcTemplate;
+        this.shardRouter = shardRouter;
+    }
+
+    @PostConstruct
+    void rebuild() {
+        long start = System.nanoTime();
+        noteSearchIndex.beginRebuild();
+        try {
+            ShardRouter router = shardRouter.getIfAvailable();
+            if (router == null) {
+                load();
+            } else {
+                router.forEachShard(this::load);
+            }
+        } finally {
+            noteSearchIndex.endRebuild();
+        }
+        log.info("Built note search index in {} ms", (System.nanoTime() - start) / 1_000_000);
+    }
+
+    private void load() {
+        jdbcTemplate.query("SELECT id, title, content, owner, version FROM note", resultSet -> {
+            noteSearchIndex.index(new Note(
+                    resultSet.getLong("id"),
+                    resultSet.getString("title"),
+                    resultSet.getString("content"),
+                    resultSet.getString("owner"),
+                    resultSet.getLong("version")));
+        });
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    void onNoteChanged(NoteChangedEvent event) {
+        Note note = event.note();
+        switch (event.type()) {
+            case CREATED, UPDATED -> noteSearchIndex.index(note);
+            case DELETED -> noteSearchIndex.remove(note.owner(), note.id());
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package com.linuxwizards.simplenotesapi;
+
+/**
+ * An owner's notes and their total size in UTF-8 bytes, with the quotas on both; 0 means no quota.
+ * Includes writes that are still in progress.
+ */
+record NoteUsage(
+        long notes,
+        long bytes,
+        long maxNotes,
+        long maxBytes
+) {}
@@ -0,0 +1,32 @@
+package com.linuxwizards.simplenotesapi;
+
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.security.SecureRandom;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counts committed writes per owner, so list responses can be tagged and revalidated with
+ * {@code If-None-Match} without running the list query.
+ * <p>
+ * Counters live in memory; the random epoch in every tag makes sure tags issued before a restart
+ * never match afterwards.
+ */
+@Component
+class OwnerChangeCounter {
+    private final String epoch = Long.toHexString(new SecureRandom().nextLong());
+    private final Map<String, AtomicLong> counters = new ConcurrentHashMap<>();
+
+    String listETag(String owner) {
+        AtomicLong counter = counters.get(owner);
+        return "\"l" + epoch + "-" + (counter == null ? 0 : counter.get()) + "\"";
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    void onNoteChanged(NoteChangedEvent event) {
+        counters.computeIfAbsent(event.note().owner(), owner -> new AtomicLong()).incrementAndGet();
+    }
+}
@@ -0,0 +1,147 @@
+package com.linuxwizards.simplenotesapi;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rejects requests over the client's {@link RateLimiter} budget with 429 and {@code Retry-After},
+ * before they get to authentication and its password hashing.
+ * <p>
+ * Credentials are not verified yet at this point, so clients are told apart by the username they
+ * claim together with their address: a client can't drain someone else's bucket by claiming their
+ * name from another address. Requests without credentials are keyed by address alone.
+ * <p>
+ * Claimed usernames cost nothing to make up, so Basic credentials that haven't been verified
+ * recently, which authentication will have to hash, first take a token from a budget of their
+ * address shared by all usernames. Rotating names then can't buy more password hashes.
+ */
+class RateLimitFilter extends OncePerRequestFilter {
+    private static final String basicPrefix = "Basic ";
+    private static final String bearerPrefix = "Bearer ";
+
+    private final RateLimiter rateLimiter;
+    private final CredentialCache credentialCache;
+    private final Map<RateLimiter.Group, Counter> rejected = new EnumMap<>(RateLimiter.Group.class);
+
+    RateLimitFilter(RateLimiter rateLimiter, CredentialCache credentialCache, MeterRegistry meterRegistry) {
+        this.rateLimiter = rateLimiter;
+        this.credentialCache = credentialCache;
+        for (RateLimiter.Group group : RateLimiter.Group.values()) {
+            rejected.put(group, meterRegistry.counter("notes.rate-limit.rejected",
+                    "group", group.name().toLowerCase()));
+        }
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        RateLimiter.Group group = group(request.getMethod(), request.getServletPath());
+        if (group == null) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+
+        String authorization = request.getHeader(HttpHeaders.AUTHORIZATION);
+        String address = request.getRemoteAddr();
+        // Checked first, so requests over the address's budget don't create buckets for made-up names
+        if (needsPasswordCheck(authorization)
+                && reject(RateLimiter.Group.PASSWORD_CHECKS, address, response)) {
+            return;
+        }
+        if (reject(group, client(authorization, address), response)) {
+            return;
+        }
+        filterChain.doFilter(request, response);
+    }
+
+    private boolean reject(RateLimiter.Group group, String client, HttpServletResponse response) {
+        long wait = rateLimiter.tryAcquire(group, client);
+        if (wait <= 0) {
+            return false;
+        }
+        rejected.get(group).increment();
+        long seconds = Math.max(1, (wait + TimeUnit.SECONDS.toNanos(1) - 1) / TimeUnit.SECONDS.toNanos(1));
+        response.setHeader(HttpHeaders.RETRY_AFTER, Long.toString(seconds));
+        response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+        return true;
+    }
+
+    private boolean needsPasswordCheck(String authorization) {
+        String[] credentials = authorization == null ? null : basicCredentials(authorization);
+        return credentials != null && !credentialCache.wasVerified(credentials[0], credentials[1]);
+    }
+
+    static RateLimiter.Group group(String method, String path) {
+        if (path.equals("/login")) {
+            return RateLimiter.Group.LOGIN;
+        }
+        if (!path.equals("/notes") && !path.startsWith("/notes/")) {
+            return null;
+        }
+        return switch (method) {
+            case "GET", "HEAD" -> RateLimiter.Group.READS;
+            // CORS preflights carry no credentials and do no work
+            case "OPTIONS" -> null;
+            default -> RateLimiter.Group.WRITES;
+        };
+    }
+
+    static String client(String authorization, String address) {
+        String username = authorization == null ? null : claimedUsername(authorization);
+        return username == null ? address : username + "@" + address;
+    }
+
+    /**
+     * Returns the username and password of a Basic {@code Authorization} header, or {@code null}.
+     */
+    private static String[] basicCredentials(String authorization) {
+        if (!authorization.regionMatches(true, 0, basicPrefix, 0, basicPrefix.length())) {
+            return null;
+        }
+        try {
+            String credentials = new String(Base64.getDecoder().decode(
+                    authorization.substring(basicPrefix.length()).trim()), StandardCharsets.UTF_8);
+            int colon = credentials.indexOf(':');
+            return colon < 0 ? null : new String[]{credentials.substring(0, colon), credentials.substring(colon + 1)};
+        } catch (IllegalArgumentException e) {
+            // Malformed base64, left for authentication to reject
+            return null;
+        }
+    }
+
+    private static String claimedUsername(String authorization) {
+        String[] credentials = basicCredentials(authorization);
+        if (credentials != null) {
+            return credentials[0];
+        }
+        try {
+            if (authorization.regionMatches(true, 0, bearerPrefix, 0, bearerPrefix.length())) {
+                // The username is the last field of the token's payload, see AccessTokenService
+                String[] parts = authorization.substring(bearerPrefix.length()).trim().split("\\.", -1);
+                if (parts.length != 3) {
+                    return null;
+                }
+                String payload = new String(Base64.getUrlDecoder().decode(parts[1]), StandardCharsets.UTF_8);
+                int separator = payload.lastIndexOf('|');
+                return separator < 0 ? null : payload.substring(separator + 1);
+            }
+        } catch (IllegalArgumentException e) {
+            // Malformed base64, left for authentication to reject
+        }
+        return null;
+    }
+}
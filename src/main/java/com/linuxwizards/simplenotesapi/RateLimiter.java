@@ -0,0 +1,113 @@
+package com.linuxwizards.simplenotesapi;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Token buckets per client and endpoint group, checked by {@link RateLimitFilter}.
+ * <p>
+ * Each bucket is a single {@link AtomicLong} holding the time at which it will be full again (the
+ * generic cell rate algorithm), so taking a token is one compare-and-set and never blocks. Buckets
+ * live in a {@link ConcurrentHashMap}, whose reads don't lock and whose bins are locked only to
+ * insert a new client. A bucket that is full again holds no state worth keeping and is evicted.
+ */
+@Component
+class RateLimiter {
+    enum Group {
+        READS,
+        WRITES,
+        LOGIN,
+        // Keyed by address only: requests whose password has to be hashed, whatever username they claim
+        PASSWORD_CHECKS
+    }
+
+    /**
+     * Allows {@code capacity} requests at once, refilled at {@code perSecond} requests per second.
+     */
+    record Limit(int capacity, int perSecond) {
+        long intervalNanos() {
+            return TimeUnit.SECONDS.toNanos(1) / perSecond;
+        }
+    }
+
+    private final boolean enabled;
+    private final LongSupplier nanoTime;
+    private final Map<Group, Limit> limits = new EnumMap<>(Group.class);
+    private final Map<Group, Map<String, AtomicLong>> buckets = new EnumMap<>(Group.class);
+
+    RateLimiter(@Value("${notes.rate-limit.enabled:true}") boolean enabled,
+                @Value("${notes.rate-limit.reads.capacity:200}") int readCapacity,
+                @Value("${notes.rate-limit.reads.per-second:100}") int readsPerSecond,
+                @Value("${notes.rate-limit.writes.capacity:50}") int writeCapacity,
+                @Value("${notes.rate-limit.writes.per-second:20}") int writesPerSecond,
+                @Value("${notes.rate-limit.login.capacity:10}") int loginCapacity,
+                @Value("${notes.rate-limit.login.per-second:1}") int loginsPerSecond,
+                @Value("${notes.rate-limit.password-checks.capacity:20}") int passwordCheckCapacity,
+                @Value("${notes.rate-limit.password-checks.per-second:5}") int passwordChecksPerSecond) {
+        this(enabled, Map.of(
+                Group.READS, new Limit(readCapacity, readsPerSecond),
+                Group.WRITES, new Limit(writeCapacity, writesPerSecond),
+                Group.LOGIN, new Limit(loginCapacity, loginsPerSecond),
+                Group.PASSWORD_CHECKS, new Limit(passwordCheckCapacity, passwordChecksPerSecond)), System::nanoTime);
+    }
+
+    RateLimiter(boolean enabled, Map<Group, Limit> limits, LongSupplier nanoTime) {
+        this.enabled = enabled;
+        this.nanoTime = nanoTime;
+        this.limits.putAll(limits);
+        for (Group group : Group.values()) {
+            buckets.put(group, new ConcurrentHashMap<>());
+        }
+    }
+
+    boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Takes a token from the client's bucket of the group. Returns 0 if there was one, otherwise how
+     * many nanoseconds until there will be.
+     */
+    long tryAcquire(Group group, String client) {
+        Limit limit = limits.get(group);
+        long interval = limit.intervalNanos();
+        long burst = interval * limit.capacity();
+        long now = nanoTime.getAsLong();
+
+        Map<String, AtomicLong> groupBuckets = buckets.get(group);
+        AtomicLong fullAt = groupBuckets.get(client);
+        if (fullAt == null) {
+            fullAt = groupBuckets.computeIfAbsent(client, key -> new AtomicLong(now));
+        }
+        while (true) {
+            long current = fullAt.get();
+            long next = Math.max(current, now) + interval;
+            long wait = next - now - burst;
+            if (wait > 0) {
+                return wait;
+            }
+            if (fullAt.compareAndSet(current, next)) {
+                return 0;
+            }
+        }
+    }
+
+    int bucketCount() {
+        return buckets.values().stream().mapToInt(Map::size).sum();
+    }
+
+    // A token taken from a bucket while it is being evicted is lost, which lets one request through for free
+    @Scheduled(fixedDelayString = "${notes.rate-limit.eviction-interval:PT1M}")
+    void evictIdle() {
+        long now = nanoTime.getAsLong();
+        buckets.values().forEach(groupBuckets -> groupBuckets.values().removeIf(fullAt -> fullAt.get() - now <= 0));
+    }
+}
@@ -0,0 +1,79 @@
+package com.linuxwizards.simplenotesapi;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * Read/write splitting, enabled with {@code notes.replica.enabled}: the primary pool is built from
+ * the usual datasource settings, the replica pool from {@code notes.replica.url}, and the application
+ * uses a {@link ReplicaRoutingDataSource} over both. The replica is kept in sync by {@link NoteReplicator}.
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "notes.replica", name = "enabled", havingValue = "true")
+class ReplicaConfig {
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    HikariDataSource primaryDataSource(DataSourceProperties dataSourceProperties,
+                                       StorageProperties storageProperties) {
+        return dataSourceProperties.initializeDataSourceBuilder()
+                .type(HikariDataSource.class)
+                .url(storageProperties.isPersistent()
+                        ? storageProperties.jdbcUrl()
+                        : dataSourceProperties.determineUrl())
+                .build();
+    }
+
+    @Bean
+    HikariDataSource replicaDataSource(@Value("${notes.replica.url}") String url,
+                                       @Value("${notes.replica.pool-size:10}") int poolSize) {
+        HikariDataSource replica = DataSourceBuilder.create()
+                .type(HikariDataSource.class)
+                .url(url)
+                .username("sa")
+                .build();
+        replica.setPoolName("replica");
+        replica.setMaximumPoolSize(poolSize);
+        return replica;
+    }
+
+    @Bean
+    ReplicaStickiness replicaStickiness(@Value("${notes.replica.sticky-window:5s}") Duration window) {
+        return new ReplicaStickiness(window, Clock.systemUTC());
+    }
+
+    @Bean
+    @Primary
+    DataSource dataSource(@Qualifier("primaryDataSource") DataSource primary,
+                          @Qualifier("replicaDataSource") DataSource replica,
+                          ReplicaStickiness stickiness) {
+        ReplicaRoutingDataSource routing = new ReplicaRoutingDataSource(stickiness);
+        routing.setTargetDataSources(Map.of(
+                ReplicaRoutingDataSource.Target.PRIMARY, primary,
+                ReplicaRoutingDataSource.Target.REPLICA, replica));
+        routing.setDefaultTargetDataSource(primary);
+        routing.afterPropertiesSet();
+        return new LazyConnectionDataSourceProxy(routing);
+    }
+
+    @Bean
+    NoteReplicator noteReplicator(NoteChangeLog noteChangeLog, JdbcTemplate jdbcTemplate,
+                                  @Qualifier("replicaDataSource") DataSource replica) {
+        // Outside read-only transactions, so the JdbcTemplate reads from the primary
+        return new NoteReplicator(noteChangeLog, jdbcTemplate, replica);
+    }
+}
@@ -0,0 +1,39 @@
+package com.linuxwizards.simplenotesapi;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Sends read-only transactions to the replica and everything else to the primary. Reads of an
+ * owner who wrote within the {@link ReplicaStickiness} window stay on the primary, so they always
+ * see their own writes.
+ * <p>
+ * Has to sit behind a {@link org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy}, so
+ * the connection is only chosen once the transaction's read-only flag is known.
+ */
+class ReplicaRoutingDataSource extends AbstractRoutingDataSource {
+    enum Target {
+        PRIMARY,
+        REPLICA
+    }
+
+    private final ReplicaStickiness stickiness;
+
+    ReplicaRoutingDataSource(ReplicaStickiness stickiness) {
+        this.stickiness = stickiness;
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            return Target.PRIMARY;
+        }
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication != null && stickiness.isSticky(authentication.getName())) {
+            return Target.PRIMARY;
+        }
+        return Target.REPLICA;
+    }
+}
@@ -0,0 +1,45 @@
+package com.linuxwizards.simplenotesapi;
+
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Remembers which owners wrote recently, so their reads go to the primary until the replica has
+ * certainly caught up. The window has to be longer than the replication lag.
+ */
+class ReplicaStickiness {
+    private final long windowMillis;
+    private final Clock clock;
+    private final Map<String, Long> stickyUntil = new ConcurrentHashMap<>();
+
+    ReplicaStickiness(Duration window, Clock clock) {
+        this.windowMillis = window.toMillis();
+        this.clock = clock;
+    }
+
+    boolean isSticky(String owner) {
+        Long until = stickyUntil.get(owner);
+        return until != null && until > clock.millis();
+    }
+
+    // After commit: the write is on the primary by then, and the response hasn't been sent yet
+    @TransactionalEventListener(fallbackExecution = true)
+    void onNoteChanged(NoteChangedEvent event) {
+        stickyUntil.put(event.note().owner(), clock.millis() + windowMillis);
+    }
+
+    @Scheduled(fixedDelayString = "PT1M")
+    void removeExpired() {
+        long now = clock.millis();
+        stickyUntil.values().removeIf(until -> until <= now);
+    }
+
+    int size() {
+        return stickyUntil.size();
+    }
+}
@@ -1,35 +1,49 @@
 package com.linuxwizards.simplenotesapi;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.authentication.AuthenticationProvider;
 import org.springframework.security.config.Customizer;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
-import org.springframework.security.core.userdetails.User;
-import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.crypto.argon2.Argon2PasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
-import org.springframework.security.provisioning.InMemoryUserDetailsManager;
 import org.springframework.security.web.SecurityFilterChain;
+import org.springframework.security.web.authentication.www.BasicAuthenticationFilter;
 import org.springframework.web.cors.CorsConfiguration;
 import org.springframework.web.cors.CorsConfigurationSource;
 import org.springframework.web.cors.UrlBasedCorsConfigurationSource;
 
+import javax.sql.DataSource;
+import java.time.Clock;
+import java.time.Duration;
 import java.util.Arrays;
 import java.util.List;
 
 @Configuration
 class SecurityConfig {
     @Bean
-    SecurityFilterChain filterChain(HttpSecurity http) throws Exception {
+    SecurityFilterChain filterChain(HttpSecurity http, AccessTokenService accessTokenService,
+                                    RateLimiter rateLimiter, CredentialCache credentialCache,
+                                    MeterRegistry meterRegistry) throws Exception {
         http
                 .cors(httpSecurityCorsConfigurer -> httpSecurityCorsConfigurer.configurationSource(corsConfigurationSource()))
                 .authorizeHttpRequests(request -> request
                         .requestMatchers("/v3/api-docs/**", "/swagger-ui/**", "/swagger-ui.html").permitAll()
+                        .requestMatchers("/actuator/health").permitAll()
+                        .requestMatchers("/actuator/prometheus", "/admin/**").hasRole("NOTES-ADMIN")
                         .requestMatchers("/notes/**", "/login")
                         .hasRole("NOTES-USER"))
+                .addFilterBefore(new AccessTokenFilter(accessTokenService, meterRegistry), BasicAuthenticationFilter.class)
                 .httpBasic(Customizer.withDefaults())
                 .csrf(csrf -> csrf.disable());
+        if (rateLimiter.isEnabled()) {
+            // Ahead of token and password checks, so clients over their limit cost next to nothing
+            http.addFilterBefore(new RateLimitFilter(rateLimiter, credentialCache, meterRegistry), AccessTokenFilter.class);
+        }
         return http.build();
     }
 
@@ -39,7 +53,7 @@ class SecurityConfig {
         configuration.setAllowedOrigins(List.of("http://localhost:3000"));
         configuration.setAllowedMethods(Arrays.asList("GET", "POST", "PUT", "DELETE", "OPTIONS"));
         configuration.setAllowedHeaders(List.of("*"));
-        configuration.setExposedHeaders(List.of("Location"));
+        configuration.setExposedHeaders(List.of("Location", "ETag", NoteCursor.nextCursorHeader));
         UrlBasedCorsConfigurationSource source = new UrlBasedCorsConfigurationSource();
         source.registerCorsConfiguration("/**", configuration);
         return source;
@@ -51,25 +65,34 @@ class SecurityConfig {
     }
 
     @Bean
-    UserDetailsService testOnlyUsers(PasswordEncoder passwordEncoder) {
-        User.UserBuilder users = User.builder();
+    CredentialCache credentialCache(@Value("${notes.security.credential-cache.max-entries:10000}") int maxEntries,
+                                    @Value("${notes.security.credential-cache.ttl:5m}") Duration ttl) {
+        return new CredentialCache(maxEntries, ttl);
+    }
+
+    @Bean
+    AuthenticationProvider authenticationProvider(UserDetailsService userDetailsService,
+                                                  PasswordEncoder passwordEncoder,
+                                                  CredentialCache credentialCache,
+                                                  MeterRegistry meterRegistry) {
+        return new CachingAuthenticationProvider(userDetailsService, passwordEncoder, credentialCache, meterRegistry);
+    }
+
+    @Bean
+    AccessTokenService accessTokenService(@Value("${notes.security.token.ttl:15m}") Duration ttl,
+                                          @Value("${notes.security.token.rotation-interval:1h}") Duration rotationInterval) {
+        return new AccessTokenService(ttl, rotationInterval, Clock.systemUTC());
+    }
 
-        UserDetails sarah = users
-                .username("sarah1")
-                .password(passwordEncoder.encode("abc123"))
-                .roles("NOTES-USER")
-                .build();
-        UserDetails hankCantNote = users
-                .username("hank-cant-note")
-                .password(passwordEncoder.encode("qrs456"))
-                .roles("LOCKED-USER")
-                .build();
-        UserDetails kumar = users
-                .username("kumar2")
-                .password(passwordEncoder.encode("xyz789"))
-                .roles("NOTES-USER")
-                .build();
+    @Bean
+    JdbcUserDetailsService userDetailsService(JdbcTemplate jdbcTemplate,
+                                              @Value("${notes.security.user-cache.max-entries:10000}") int maxEntries,
+                                              @Value("${notes.security.user-cache.ttl:1m}") Duration ttl) {
+        return new JdbcUserDetailsService(jdbcTemplate, maxEntries, ttl);
+    }
 
-        return new InMemoryUserDetailsManager(sarah, hankCantNote, kumar);
+    @Bean
+    UserImporter userImporter(DataSource dataSource) {
+        return new UserImporter(dataSource);
     }
 }
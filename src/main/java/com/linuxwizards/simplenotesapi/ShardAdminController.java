@@ -0,0 +1,62 @@
+package com.linuxwizards.simplenotesapi;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Map;
+
+/**
+ * Shard placement and online rebalancing, for users with the NOTES-ADMIN role.
+ */
+@RestController
+@RequestMapping("/admin/shards")
+@ConditionalOnProperty(prefix = "notes.sharding", name = "enabled", havingValue = "true")
+class ShardAdminController {
+    private final ShardRouter shardRouter;
+    private final ShardRebalancer shardRebalancer;
+
+    private ShardAdminController(ShardRouter shardRouter, ShardRebalancer shardRebalancer) {
+        this.shardRouter = shardRouter;
+        this.shardRebalancer = shardRebalancer;
+    }
+
+    @GetMapping
+    private ResponseEntity<Map<String, Object>> placements() {
+        return ResponseEntity.ok(Map.of(
+                "shards", shardRouter.shardCount(),
+                "pinned", shardRouter.pinned()));
+    }
+
+    @GetMapping("/{owner}")
+    private ResponseEntity<Map<String, Object>> placement(@PathVariable String owner) {
+        return ResponseEntity.ok(Map.of(
+                "shard", shardRouter.shardFor(owner),
+                "ringShard", shardRouter.ringShardFor(owner)));
+    }
+
+    /**
+     * Moves all of an owner's notes to the given shard while they keep using the API.
+     */
+    @PostMapping("/{owner}/move")
+    private ResponseEntity<Void> move(@PathVariable String owner, @RequestParam int shard) {
+        if (shard < 0 || shard >= shardRouter.shardCount()) {
+            return ResponseEntity.badRequest().build();
+        }
+        shardRebalancer.move(owner, shard);
+        return ResponseEntity.noContent().build();
+    }
+
+    /**
+     * Moves every owner that is off the shard the hash ring places them on, e.g. after adding a shard.
+     */
+    @PostMapping("/rebalance")
+    private ResponseEntity<Map<String, Integer>> rebalance() {
+        return ResponseEntity.ok(Map.of("moved", shardRebalancer.rebalance()));
+    }
+}
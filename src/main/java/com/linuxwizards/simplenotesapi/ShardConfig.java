@@ -0,0 +1,90 @@
+package com.linuxwizards.simplenotesapi;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.flywaydb.core.Flyway;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.flyway.FlywayMigrationStrategy;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Owner-sharded storage, enabled with {@code notes.sharding.enabled}: one pool per URL in
+ * {@code notes.sharding.urls}, and a {@link ShardRoutingDataSource} over them as the application's
+ * DataSource. Every shard gets the full schema; users, Flyway's history and anything else not owned
+ * by a notes owner live on the first shard.
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "notes.sharding", name = "enabled", havingValue = "true")
+@EnableConfigurationProperties(ShardingProperties.class)
+class ShardConfig {
+    @Bean
+    ShardRouter shardRouter(ShardingProperties properties,
+                            @Value("${notes.replica.enabled:false}") boolean replica,
+                            @Value("${notes.create-pipeline.enabled:false}") boolean createPipeline) {
+        // The replica is a copy of one database, and a pipeline batch mixes owners of different shards
+        if (replica || createPipeline) {
+            throw new IllegalStateException(
+                    "notes.sharding can't be combined with notes.replica or notes.create-pipeline");
+        }
+        List<HikariDataSource> shards = new ArrayList<>();
+        for (int shard = 0; shard < properties.urls().size(); shard++) {
+            HikariDataSource dataSource = DataSourceBuilder.create()
+                    .type(HikariDataSource.class)
+                    .url(properties.urls().get(shard))
+                    .username("sa")
+                    .build();
+            dataSource.setPoolName("shard-" + shard);
+            dataSource.setMaximumPoolSize(properties.poolSize());
+            shards.add(dataSource);
+        }
+        return new ShardRouter(shards, properties.maxShards(), properties.virtualNodes());
+    }
+
+    @Bean
+    @Primary
+    DataSource dataSource(ShardRouter shardRouter) {
+        return new LazyConnectionDataSourceProxy(new ShardRoutingDataSource(shardRouter));
+    }
+
+    @Bean
+    FlywayMigrationStrategy shardMigrationStrategy(ShardRouter shardRouter) {
+        return flyway -> {
+            for (int shard = 0; shard < shardRouter.shardCount(); shard++) {
+                Flyway.configure()
+                        .configuration(flyway.getConfiguration())
+                        .dataSource(shardRouter.dataSource(shard))
+                        // Callbacks such as afterMigrate seed data, which belongs on one shard only
+                        .skipDefaultCallbacks(shard > 0)
+                        .load()
+                        .migrate();
+            }
+            shardRouter.prepare();
+            shardRouter.discoverPlacements();
+        };
+    }
+
+    @Bean
+    FilterRegistrationBean<ShardWriteGateFilter> shardWriteGateFilter(ShardRouter shardRouter) {
+        // Registered after Spring Security's filter chain, so the principal is known
+        FilterRegistrationBean<ShardWriteGateFilter> registration =
+                new FilterRegistrationBean<>(new ShardWriteGateFilter(shardRouter));
+        registration.addUrlPatterns("/notes", "/notes/*");
+        return registration;
+    }
+
+    @Bean
+    ShardRebalancer shardRebalancer(ShardRouter shardRouter, NoteChangeLog noteChangeLog,
+                                    ShardingProperties properties) {
+        return new ShardRebalancer(shardRouter, noteChangeLog, properties.maxShards());
+    }
+}
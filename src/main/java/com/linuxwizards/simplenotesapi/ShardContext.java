@@ -0,0 +1,52 @@
+package com.linuxwizards.simplenotesapi;
+
+import java.util.function.Supplier;
+
+/**
+ * Overrides which shard the current thread's database access goes to. By default that is the shard
+ * of the authenticated principal; code running on behalf of another owner, or off a request thread,
+ * names the owner or shard explicitly. Without sharding it has no effect.
+ */
+final class ShardContext {
+    private static final ThreadLocal<String> currentOwner = new ThreadLocal<>();
+    private static final ThreadLocal<Integer> currentShard = new ThreadLocal<>();
+
+    private ShardContext() {
+    }
+
+    static <T> T callAsOwner(String owner, Supplier<T> task) {
+        String previous = currentOwner.get();
+        currentOwner.set(owner);
+        try {
+            return task.get();
+        } finally {
+            restore(currentOwner, previous);
+        }
+    }
+
+    static void runOnShard(int shard, Runnable task) {
+        Integer previous = currentShard.get();
+        currentShard.set(shard);
+        try {
+            task.run();
+        } finally {
+            restore(currentShard, previous);
+        }
+    }
+
+    static String owner() {
+        return currentOwner.get();
+    }
+
+    static Integer shard() {
+        return currentShard.get();
+    }
+
+    private static <T> void restore(ThreadLocal<T> threadLocal, T previous) {
+        if (previous == null) {
+            threadLocal.remove();
+        } else {
+            threadLocal.set(previous);
+        }
+    }
+}
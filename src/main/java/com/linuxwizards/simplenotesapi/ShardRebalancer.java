@@ -0,0 +1,158 @@
+package com.linuxwizards.simplenotesapi;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Moves owners between shards while the application keeps serving them.
+ * <p>
+ * The owner's notes and change log are first copied while they keep reading and writing on the
+ * source shard. Then their writes are held back for the final step only: changes made during the
+ * copy are replayed from the change log, the target's sequence is moved past the owner's changes so
+ * sync positions stay valid, and the owner is routed to the target. Their rows on the source shard
+ * are deleted last.
+ * <p>
+ * Rows are copied with plain inserts, so an id or sequence number already taken on the target fails
+ * the move rather than overwriting another owner's note or change.
+ */
+class ShardRebalancer {
+    private static final Logger log = LoggerFactory.getLogger(ShardRebalancer.class);
+    private static final int batchSize = 500;
+    // Leaves room for sequence numbers handed out on the target while it is being moved
+    private static final int sequenceMargin = 1024;
+
+    private static final String selectNotesSql =
+            "SELECT id, title, content, owner, version, content_length FROM note WHERE owner = ?";
+    private static final String insertNoteSql =
+            "INSERT INTO note (id, title, content, owner, version, content_length) VALUES (?, ?, ?, ?, ?, ?)";
+    private static final String selectChangesSql =
+            "SELECT seq, note_id, owner, type, changed_at FROM note_change WHERE owner = ? AND seq > ?";
+    private static final String insertChangeSql =
+            "INSERT INTO note_change (seq, note_id, owner, type, changed_at) VALUES (?, ?, ?, ?, ?)";
+
+    private final ShardRouter shardRouter;
+    private final NoteChangeLog noteChangeLog;
+    private final int maxShards;
+    private final ReentrantLock moveLock = new ReentrantLock();
+
+    ShardRebalancer(ShardRouter shardRouter, NoteChangeLog noteChangeLog, int maxShards) {
+        this.shardRouter = shardRouter;
+        this.noteChangeLog = noteChangeLog;
+        this.maxShards = maxShards;
+    }
+
+    /**
+     * Moves every owner that is off their ring shard, e.g. after a shard was added, and returns how many moved.
+     */
+    int rebalance() {
+        int moved = 0;
+        for (String owner : shardRouter.pinned().keySet()) {
+            if (move(owner, shardRouter.ringShardFor(owner))) {
+                moved++;
+            }
+        }
+        return moved;
+    }
+
+    /**
+     * Moves the owner's notes to the target shard; returns {@code false} if they already were there.
+     */
+    boolean move(String owner, int target) {
+        if (target < 0 || target >= shardRouter.shardCount()) {
+            throw new IllegalArgumentException("No shard " + target);
+        }
+        moveLock.lock();
+        try {
+            int source = shardRouter.shardFor(owner);
+            if (source == target) {
+                return false;
+            }
+            JdbcTemplate from = new JdbcTemplate(shardRouter.dataSource(source));
+            JdbcTemplate to = new JdbcTemplate(shardRouter.dataSource(target));
+
+            // Everything committed up to here is in the bulk copy; anything later is replayed below
+            long mark = noteChangeLog.highWaterMark(owner);
+            // Left behind by an interrupted move; the owner's notes are on the source shard
+            to.update("DELETE FROM note_change WHERE owner = ?", owner);
+            to.update("DELETE FROM note WHERE owner = ?", owner);
+            copy(from, to, selectNotesSql, insertNoteSql, owner);
+            // Streamed one at a time, since each may be megabytes
+            for (Long id : from.queryForList("SELECT c.id FROM note_content c JOIN note n ON n.id = c.id "
+                    + "WHERE n.owner = ?", Long.class, owner)) {
+                NoteContentStore.copy(from, to, id);
+            }
+            copy(from, to, selectChangesSql, insertChangeSql, owner, -1L);
+
+            Lock gate = shardRouter.writeGate(owner).writeLock();
+            gate.lock();
+            try {
+                long maxSeq = catchUp(owner, from, to, mark);
+                advanceSequence(to, target, maxSeq);
+                shardRouter.place(owner, target);
+            } finally {
+                gate.unlock();
+            }
+
+            from.update("DELETE FROM note_change WHERE owner = ?", owner);
+            from.update("DELETE FROM note WHERE owner = ?", owner);
+            log.info("Moved notes of {} from shard {} to shard {}", owner, source, target);
+            return true;
+        } finally {
+            moveLock.unlock();
+        }
+    }
+
+    private long catchUp(String owner, JdbcTemplate from, JdbcTemplate to, long mark) {
+        // The bulk copy may already have some of these
+        to.update("DELETE FROM note_change WHERE owner = ? AND seq > ?", owner, mark);
+        copy(from, to, selectChangesSql, insertChangeSql, owner, mark);
+        List<Long> changedIds = from.queryForList(
+                "SELECT DISTINCT note_id FROM note_change WHERE owner = ? AND seq > ?", Long.class, owner, mark);
+        for (Long id : changedIds) {
+            List<Map<String, Object>> note = from.queryForList(selectNotesSql + " AND id = ?", owner, id);
+            to.update("DELETE FROM note WHERE id = ? AND owner = ?", id, owner);
+            if (!note.isEmpty()) {
+                to.update(insertNoteSql, note.get(0).values().toArray());
+                NoteContentStore.copy(from, to, id);
+            }
+        }
+        return from.queryForObject("SELECT COALESCE(MAX(seq), 0) FROM note_change WHERE owner = ?",
+                Long.class, owner);
+    }
+
+    private void advanceSequence(JdbcTemplate to, int target, long maxSeq) {
+        long next = to.queryForObject(
+                "SELECT BASE_VALUE FROM INFORMATION_SCHEMA.SEQUENCES WHERE SEQUENCE_NAME = 'NOTE_CHANGE_SEQ'",
+                Long.class);
+        // The owner's next changes must come after the ones they already synced
+        if (next <= maxSeq) {
+            to.execute("ALTER SEQUENCE note_change_seq RESTART WITH "
+                    + shardRouter.nextInStripe(maxSeq + (long) sequenceMargin * maxShards, target));
+        }
+    }
+
+    private static void copy(JdbcTemplate from, JdbcTemplate to, String selectSql, String insertSql, Object... args) {
+        List<Object[]> batch = new ArrayList<>();
+        from.query(selectSql, resultSet -> {
+            Object[] row = new Object[resultSet.getMetaData().getColumnCount()];
+            for (int i = 0; i < row.length; i++) {
+                row[i] = resultSet.getObject(i + 1);
+            }
+            batch.add(row);
+            if (batch.size() == batchSize) {
+                to.batchUpdate(insertSql, batch);
+                batch.clear();
+            }
+        }, args);
+        if (!batch.isEmpty()) {
+            to.batchUpdate(insertSql, batch);
+        }
+    }
+}
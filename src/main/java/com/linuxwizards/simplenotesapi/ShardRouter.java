@@ -0,0 +1,183 @@
+package com.linuxwizards.simplenotesapi;
+
+import com.zaxxer.hikari.HikariDataSource;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Knows which shard holds each owner's notes.
+ * <p>
+ * Owners are placed by consistent hashing of their name, so adding a shard only moves the owners
+ * that hash to it. Owners found elsewhere, because they were moved or the ring changed since their
+ * notes were written, are pinned to where their notes are until {@link ShardRebalancer} moves them.
+ * There is no directory to keep: the pins are rediscovered from the shards at startup.
+ * <p>
+ * Every shard generates note ids and change sequence numbers in its own residue class modulo
+ * {@code maxShards}, so both stay unique across shards and when notes move between them.
+ */
+class ShardRouter {
+    private static final Logger log = LoggerFactory.getLogger(ShardRouter.class);
+    private static final int gateStripes = 256;
+
+    private final List<HikariDataSource> shards;
+    private final int maxShards;
+    private final NavigableMap<Long, Integer> ring = new TreeMap<>();
+    private final Map<String, Integer> pinned = new ConcurrentHashMap<>();
+    private final ReadWriteLock[] gates = new ReadWriteLock[gateStripes];
+
+    ShardRouter(List<HikariDataSource> shards, int maxShards, int virtualNodes) {
+        if (shards.isEmpty() || shards.size() > maxShards) {
+            throw new IllegalArgumentException("Need between 1 and " + maxShards + " shards, got " + shards.size());
+        }
+        this.shards = shards;
+        this.maxShards = maxShards;
+        for (int shard = 0; shard < shards.size(); shard++) {
+            for (int node = 0; node < virtualNodes; node++) {
+                ring.put(hash("shard-" + shard + "#" + node), shard);
+            }
+        }
+        for (int i = 0; i < gateStripes; i++) {
+            gates[i] = new ReentrantReadWriteLock();
+        }
+    }
+
+    @PreDestroy
+    void close() {
+        shards.forEach(HikariDataSource::close);
+    }
+
+    int shardCount() {
+        return shards.size();
+    }
+
+    DataSource dataSource(int shard) {
+        return shards.get(shard);
+    }
+
+    int shardFor(String owner) {
+        Integer shard = pinned.get(owner);
+        return shard != null ? shard : ringShardFor(owner);
+    }
+
+    int ringShardFor(String owner) {
+        Map.Entry<Long, Integer> entry = ring.ceilingEntry(hash(owner));
+        return (entry != null ? entry : ring.firstEntry()).getValue();
+    }
+
+    /**
+     * Records that the owner's notes are now on the given shard.
+     */
+    void place(String owner, int shard) {
+        if (shard == ringShardFor(owner)) {
+            pinned.remove(owner);
+        } else {
+            pinned.put(owner, shard);
+        }
+    }
+
+    /**
+     * Returns the owners that are not on the shard the ring places them on.
+     */
+    Map<String, Integer> pinned() {
+        return Map.copyOf(pinned);
+    }
+
+    /**
+     * Writes of the owner hold the read lock; moving the owner takes the write lock for its final step.
+     * Owners share a lock per stripe, so that step may briefly hold up a few other owners as well.
+     */
+    ReadWriteLock writeGate(String owner) {
+        return gates[Math.floorMod(owner.hashCode(), gateStripes)];
+    }
+
+    void forEachShard(Runnable task) {
+        for (int shard = 0; shard < shards.size(); shard++) {
+            ShardContext.runOnShard(shard, task);
+        }
+    }
+
+    /**
+     * Returns the smallest id of the shard's residue class above {@code value}.
+     */
+    long nextInStripe(long value, int shard) {
+        return (Math.floorDiv(value, maxShards) + 1) * maxShards + shard;
+    }
+
+    /**
+     * Makes every shard generate ids and sequence numbers in its own residue class, above everything
+     * held by any shard. Taking the maximum over all shards matters when sharding is enabled over
+     * existing data, whose ids and sequence numbers were generated one by one on the first shard.
+     */
+    void prepare() {
+        long maxId = 0;
+        long maxSeq = 0;
+        for (int shard = 0; shard < shards.size(); shard++) {
+            JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource(shard));
+            maxId = Math.max(maxId, jdbcTemplate.queryForObject("SELECT COALESCE(MAX(id), 0) FROM note", Long.class));
+            maxSeq = Math.max(maxSeq, Math.max(
+                    jdbcTemplate.queryForObject("SELECT COALESCE(MAX(seq), 0) FROM note_change", Long.class),
+                    jdbcTemplate.queryForObject("SELECT seq FROM note_change_horizon", Long.class)));
+        }
+        for (int shard = 0; shard < shards.size(); shard++) {
+            JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource(shard));
+            jdbcTemplate.execute("ALTER TABLE note ALTER COLUMN id SET INCREMENT BY " + maxShards);
+            jdbcTemplate.execute("ALTER TABLE note ALTER COLUMN id RESTART WITH " + nextInStripe(maxId, shard));
+            jdbcTemplate.execute("ALTER SEQUENCE note_change_seq RESTART WITH " + nextInStripe(maxSeq, shard)
+                    + " INCREMENT BY " + maxShards);
+        }
+    }
+
+    /**
+     * Pins every owner whose notes are not on their ring shard, judged by where their latest change is.
+     */
+    void discoverPlacements() {
+        Map<String, long[]> latest = new HashMap<>();
+        for (int shard = 0; shard < shards.size(); shard++) {
+            int current = shard;
+            new JdbcTemplate(dataSource(shard)).query(
+                    "SELECT owner, MAX(seq) AS seq FROM note_change GROUP BY owner", resultSet -> {
+                        String owner = resultSet.getString("owner");
+                        long seq = resultSet.getLong("seq");
+                        long[] found = latest.get(owner);
+                        if (found != null) {
+                            // Left behind by an interrupted move; the shard with the latest change wins
+                            log.warn("Notes of {} found on shards {} and {}", owner, found[0], current);
+                        }
+                        if (found == null || seq > found[1]) {
+                            latest.put(owner, new long[]{current, seq});
+                        }
+                    });
+        }
+        pinned.clear();
+        latest.forEach((owner, found) -> place(owner, (int) found[0]));
+        log.info("Routing {} owners over {} shards, {} of them off their ring shard",
+                latest.size(), shards.size(), pinned.size());
+    }
+
+    private static long hash(String key) {
+        // FNV-1a, then MurmurHash3's finalizer to spread FNV's weak low bits over the ring
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < key.length(); i++) {
+            hash ^= key.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
@@ -0,0 +1,45 @@
+package com.linuxwizards.simplenotesapi;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Sends each connection to the shard of the owner it is used for: the shard or owner set in the
+ * {@link ShardContext}, else the authenticated principal. Anything else, such as authentication and
+ * migrations, uses the first shard.
+ * <p>
+ * Has to sit behind a {@link org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy}, so
+ * a transaction picks its shard at its first statement rather than when it begins.
+ */
+class ShardRoutingDataSource extends AbstractRoutingDataSource {
+    private final ShardRouter shardRouter;
+
+    ShardRoutingDataSource(ShardRouter shardRouter) {
+        this.shardRouter = shardRouter;
+        Map<Object, Object> shards = new HashMap<>();
+        for (int shard = 0; shard < shardRouter.shardCount(); shard++) {
+            shards.put(shard, shardRouter.dataSource(shard));
+        }
+        setTargetDataSources(shards);
+        setDefaultTargetDataSource(shardRouter.dataSource(0));
+        afterPropertiesSet();
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        Integer shard = ShardContext.shard();
+        if (shard != null) {
+            return shard;
+        }
+        String owner = ShardContext.owner();
+        if (owner == null) {
+            Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+            owner = authentication == null ? null : authentication.getName();
+        }
+        return owner == null ? 0 : shardRouter.shardFor(owner);
+    }
+}
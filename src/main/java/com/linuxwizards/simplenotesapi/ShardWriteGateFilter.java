@@ -0,0 +1,45 @@
+package com.linuxwizards.simplenotesapi;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.Set;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * Holds the owner's {@link ShardRouter#writeGate write gate} for the whole of a write request, so
+ * {@link ShardRebalancer} can wait for in-flight writes and hold back new ones while it switches shards.
+ */
+class ShardWriteGateFilter extends OncePerRequestFilter {
+    private static final Set<String> readMethods = Set.of("GET", "HEAD", "OPTIONS");
+
+    private final ShardRouter shardRouter;
+
+    ShardWriteGateFilter(ShardRouter shardRouter) {
+        this.shardRouter = shardRouter;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication == null || readMethods.contains(request.getMethod())) {
+            chain.doFilter(request, response);
+            return;
+        }
+
+        Lock gate = shardRouter.writeGate(authentication.getName()).readLock();
+        gate.lock();
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            gate.unlock();
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package com.linuxwizards.simplenotesapi;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.util.List;
+
+/**
+ * Settings of owner-sharded storage, used when {@code notes.sharding.enabled} is set.
+ *
+ * @param enabled      whether notes are spread over the databases in {@code urls}
+ * @param urls         JDBC URL of every shard, in shard order; shards may only be appended
+ * @param maxShards    upper bound on the number of shards, fixed for the lifetime of the data since
+ *                     generated ids are striped by it
+ * @param virtualNodes points per shard on the consistent hash ring
+ * @param poolSize     maximum connections per shard
+ */
+@ConfigurationProperties("notes.sharding")
+record ShardingProperties(
+        @DefaultValue("false") boolean enabled,
+        @DefaultValue List<String> urls,
+        @DefaultValue("64") int maxShards,
+        @DefaultValue("128") int virtualNodes,
+        @DefaultValue("10") int poolSize
+) {
+}
@@ -0,0 +1,144 @@
+package com.linuxwizards.simplenotesapi;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Coalesces concurrent identical reads: the first request for an owner's note or page runs the query,
+ * and requests for the same thing arriving meanwhile wait for it. The result is serialized once, by
+ * the first request that sends it, and the others send the same bytes; requests answered with 304
+ * never serialize it.
+ * <p>
+ * Flights are keyed by owner, so results are never shared between owners, and by the owner's
+ * {@link OwnerChangeCounter} state, so a request made after one of the owner's writes committed
+ * never joins a flight that started before it. Followers never share a failure: if the leader
+ * fails, is interrupted or takes longer than {@code max-wait}, each follower runs the query itself.
+ */
+@Component
+class SingleFlight {
+    /**
+     * A query's result and its JSON, serialized on first use; {@code json} is {@code null} when
+     * {@code value} is.
+     */
+    static final class Result {
+        private final Object value;
+        private final ObjectMapper objectMapper;
+        private final AtomicReference<byte[]> json = new AtomicReference<>();
+
+        private Result(Object value, ObjectMapper objectMapper) {
+            this.value = value;
+            this.objectMapper = objectMapper;
+        }
+
+        Object value() {
+            return value;
+        }
+
+        byte[] json() {
+            if (value == null) {
+                return null;
+            }
+            byte[] serialized = json.get();
+            if (serialized == null) {
+                try {
+                    // Requests racing here may serialize twice, but all of them send the bytes that won
+                    json.compareAndSet(null, objectMapper.writeValueAsBytes(value));
+                } catch (JsonProcessingException e) {
+                    throw new UncheckedIOException(e);
+                }
+                serialized = json.get();
+            }
+            return serialized;
+        }
+    }
+
+    private record Key(String owner, String version, Object request) {}
+
+    private final ObjectMapper objectMapper;
+    private final OwnerChangeCounter ownerChangeCounter;
+    private final boolean enabled;
+    private final Duration maxWait;
+    private final Map<Key, CompletableFuture<Result>> inFlight = new ConcurrentHashMap<>();
+
+    private final LongAdder leaders = new LongAdder();
+    private final LongAdder followers = new LongAdder();
+    private final LongAdder fallbacks = new LongAdder();
+
+    SingleFlight(ObjectMapper objectMapper, OwnerChangeCounter ownerChangeCounter,
+                 @Value("${notes.single-flight.enabled:true}") boolean enabled,
+                 @Value("${notes.single-flight.max-wait:2s}") Duration maxWait) {
+        this.objectMapper = objectMapper;
+        this.ownerChangeCounter = ownerChangeCounter;
+        this.enabled = enabled;
+        this.maxWait = maxWait;
+    }
+
+    /**
+     * Runs {@code loader}, or waits for a concurrent identical one. {@code request} identifies what is
+     * read within the owner's notes and needs value semantics.
+     */
+    Result load(String owner, Object request, Supplier<?> loader) {
+        if (!enabled) {
+            return run(loader);
+        }
+
+        Key key = new Key(owner, ownerChangeCounter.listETag(owner), request);
+        CompletableFuture<Result> flight = new CompletableFuture<>();
+        CompletableFuture<Result> leader = inFlight.putIfAbsent(key, flight);
+        if (leader == null) {
+            leaders.increment();
+            try {
+                Result result = run(loader);
+                flight.complete(result);
+                return result;
+            } catch (RuntimeException | Error e) {
+                flight.completeExceptionally(e);
+                throw e;
+            } finally {
+                inFlight.remove(key, flight);
+            }
+        }
+
+        try {
+            Result result = leader.get(maxWait.toNanos(), TimeUnit.NANOSECONDS);
+            followers.increment();
+            return result;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | TimeoutException e) {
+            // The leader's failure may be its own, such as a cancelled request; try on our own
+        }
+        fallbacks.increment();
+        return run(loader);
+    }
+
+    private Result run(Supplier<?> loader) {
+        return new Result(loader.get(), objectMapper);
+    }
+
+    long leaderCount() {
+        return leaders.sum();
+    }
+
+    long followerCount() {
+        return followers.sum();
+    }
+
+    long fallbackCount() {
+        return fallbacks.sum();
+    }
+}
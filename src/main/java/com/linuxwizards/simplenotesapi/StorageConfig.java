@@ -0,0 +1,31 @@
+package com.linuxwizards.simplenotesapi;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Switches the database to a file when {@code notes.storage.path} is set (e.g. with the
+ * {@code persistent} profile); otherwise Spring Boot's in-memory H2 is used. Flyway only applies
+ * migrations a database doesn't have yet, so restarting on an existing file doesn't touch the schema.
+ */
+@Configuration
+@EnableConfigurationProperties(StorageProperties.class)
+class StorageConfig {
+    // With a read replica, ReplicaConfig builds the primary pool from the same settings;
+    // with sharding, ShardConfig builds one pool per shard
+    @Bean
+    @ConditionalOnExpression("'${notes.storage.path:}' != '' and !${notes.replica.enabled:false} "
+            + "and !${notes.sharding.enabled:false}")
+    @ConfigurationProperties("spring.datasource.hikari")
+    HikariDataSource dataSource(DataSourceProperties dataSourceProperties, StorageProperties storageProperties) {
+        return dataSourceProperties.initializeDataSourceBuilder()
+                .type(HikariDataSource.class)
+                .url(storageProperties.jdbcUrl())
+                .build();
+    }
+}
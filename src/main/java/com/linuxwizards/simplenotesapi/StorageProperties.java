@@ -0,0 +1,40 @@
+package com.linuxwizards.simplenotesapi;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+/**
+ * Settings of the file-backed H2 database, used when {@code notes.storage.path} is set.
+ *
+ * @param path           database file path without the {@code .mv.db} extension
+ * @param cacheSize      MVStore page cache in KB
+ * @param writeDelay     how long committed changes may stay in memory before they are written to the file
+ * @param pageSplitSize  page size in bytes at which MVStore splits pages; only applies to new databases,
+ *                       0 keeps H2's default
+ * @param maxCompactTime time spent compacting the file when the database closes
+ */
+@ConfigurationProperties("notes.storage")
+record StorageProperties(
+        String path,
+        @DefaultValue("65536") int cacheSize,
+        @DefaultValue("500ms") Duration writeDelay,
+        @DefaultValue("0") int pageSplitSize,
+        @DefaultValue("200ms") Duration maxCompactTime
+) {
+    boolean isPersistent() {
+        return path != null && !path.isBlank();
+    }
+
+    String jdbcUrl() {
+        StringBuilder url = new StringBuilder("jdbc:h2:file:").append(path)
+                .append(";CACHE_SIZE=").append(cacheSize)
+                .append(";WRITE_DELAY=").append(writeDelay.toMillis())
+                .append(";MAX_COMPACT_TIME=").append(maxCompactTime.toMillis());
+        if (pageSplitSize > 0) {
+            url.append(";PAGE_SIZE=").append(pageSplitSize);
+        }
+        return url.toString();
+    }
+}
@@ -0,0 +1,134 @@
+package com.linuxwizards.simplenotesapi;
+
+import org.flywaydb.core.Flyway;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Bulk-loads users with already hashed passwords, one per line as
+ * {@code username,argon2-hash,ROLE;ROLE}. Users that exist are replaced, roles included, and so
+ * are users listed earlier in the same file; repeated roles count once.
+ * Each batch is written in one transaction, so nobody ever sees a user without their roles.
+ * <p>
+ * Usage: {@code ./gradlew importUsers -Pargs="<jdbc-url> <csv-file>"}, or {@code POST /admin/users}
+ * on a running application. Plain passwords are refused: hashing them here would take as long as
+ * the startup hashing this replaces.
+ */
+class UserImporter {
+    private static final int batchSize = 10_000;
+    private static final String hashPrefix = "$argon2";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    private record ImportedUser(String password, Set<String> roles) {}
+
+    UserImporter(DataSource dataSource) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+    }
+
+    /**
+     * Imports every line of {@code reader} and returns how many users were imported.
+     */
+    int importUsers(BufferedReader reader) {
+        int[] imported = new int[1];
+        // Users live on the first shard when notes are sharded
+        ShardContext.runOnShard(0, () -> {
+            try {
+                imported[0] = importBatches(reader);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        return imported[0];
+    }
+
+    private int importBatches(BufferedReader reader) throws IOException {
+        Map<String, ImportedUser> users = new LinkedHashMap<>();
+        int imported = 0;
+        int lineNumber = 0;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            if (line.isBlank()) {
+                continue;
+            }
+            String[] fields = line.split(",", -1);
+            if (fields.length != 3 || fields[0].isBlank() || !fields[1].startsWith(hashPrefix)) {
+                throw new IllegalArgumentException("Line " + lineNumber
+                        + ": expected username,argon2-hash,ROLE;ROLE");
+            }
+            Set<String> roles = new LinkedHashSet<>();
+            for (String role : fields[2].split(";")) {
+                if (!role.isBlank()) {
+                    roles.add(role.trim());
+                }
+            }
+            // A later line replaces an earlier one in the same batch, as it would one in an earlier batch
+            users.put(fields[0].trim(), new ImportedUser(fields[1].trim(), roles));
+            if (users.size() == batchSize) {
+                imported += write(users);
+            }
+        }
+        if (!users.isEmpty()) {
+            imported += write(users);
+        }
+        return imported;
+    }
+
+    private int write(Map<String, ImportedUser> users) {
+        List<Object[]> passwords = new ArrayList<>(users.size());
+        List<Object[]> usernames = new ArrayList<>(users.size());
+        List<Object[]> roles = new ArrayList<>();
+        users.forEach((username, user) -> {
+            passwords.add(new Object[]{username, user.password()});
+            usernames.add(new Object[]{username});
+            user.roles().forEach(role -> roles.add(new Object[]{username, role}));
+        });
+        transactionTemplate.executeWithoutResult(status -> {
+            jdbcTemplate.batchUpdate("MERGE INTO app_user (username, password) KEY (username) VALUES (?, ?)", passwords);
+            jdbcTemplate.batchUpdate("DELETE FROM app_user_role WHERE username = ?", usernames);
+            jdbcTemplate.batchUpdate("INSERT INTO app_user_role (username, role) VALUES (?, ?)", roles);
+        });
+        int written = users.size();
+        users.clear();
+        return written;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("Usage: UserImporter <jdbc-url> <csv-file>");
+            System.exit(1);
+        }
+        DataSource dataSource = new DriverManagerDataSource(args[0], "sa", "");
+        Flyway.configure()
+                .dataSource(dataSource)
+                .baselineOnMigrate(true)
+                .baselineVersion("1")
+                .load()
+                .migrate();
+
+        long start = System.nanoTime();
+        try (BufferedReader reader = Files.newBufferedReader(Path.of(args[1]), StandardCharsets.UTF_8)) {
+            int imported = new UserImporter(dataSource).importUsers(reader);
+            System.out.printf("Imported %d users in %.1f s%n", imported, (System.nanoTime() - start) / 1e9);
+        }
+    }
+}
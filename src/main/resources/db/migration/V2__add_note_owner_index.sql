@@ -0,0 +1,4 @@
+-- Every query is scoped by owner and lists are ordered by id DESC, so an owner's notes
+-- can be read as one index range in the order they're returned.
+-- Lookups by id AND owner are served by the primary key.
+CREATE INDEX note_owner_id ON note (OWNER, ID DESC);
@@ -0,0 +1,2 @@
+-- Bumped on every update; served as the note's ETag and checked by If-Match
+ALTER TABLE note ADD COLUMN VERSION BIGINT NOT NULL DEFAULT 0;
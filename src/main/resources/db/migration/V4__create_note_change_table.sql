@@ -0,0 +1,27 @@
+-- Append-only log of note writes, read by GET /notes/changes. Sequence numbers are reserved
+-- before the row is written, so readers can stop short of writes that have not committed yet.
+CREATE SEQUENCE note_change_seq;
+
+CREATE TABLE note_change
+(
+    SEQ BIGINT PRIMARY KEY,
+    NOTE_ID BIGINT NOT NULL,
+    OWNER VARCHAR(255) NOT NULL,
+    TYPE VARCHAR(10) NOT NULL,
+    CHANGED_AT TIMESTAMP NOT NULL
+);
+
+-- Syncs read one owner's changes after a sequence number; compaction looks for later changes of a note
+CREATE INDEX note_change_owner_seq ON note_change (OWNER, SEQ);
+CREATE INDEX note_change_note_seq ON note_change (NOTE_ID, SEQ);
+
+-- Highest sequence number whose tombstones were compacted away; syncs from before it must start over
+CREATE TABLE note_change_horizon
+(
+    SEQ BIGINT NOT NULL
+);
+INSERT INTO note_change_horizon (SEQ) VALUES (0);
+
+-- Existing notes enter the log as created, so a full sync returns them
+INSERT INTO note_change (SEQ, NOTE_ID, OWNER, TYPE, CHANGED_AT)
+SELECT NEXT VALUE FOR note_change_seq, ID, OWNER, 'CREATED', CURRENT_TIMESTAMP FROM note ORDER BY ID;
@@ -0,0 +1,16 @@
+-- Accounts for HTTP Basic and /login. Passwords are stored as Argon2 hashes, so nothing has to be
+-- hashed at startup; the primary keys serve the lookup by username on every authentication.
+CREATE TABLE app_user
+(
+    USERNAME VARCHAR(255) PRIMARY KEY,
+    PASSWORD VARCHAR(255) NOT NULL,
+    ENABLED BOOLEAN NOT NULL DEFAULT TRUE
+);
+
+-- Roles without the ROLE_ prefix, e.g. NOTES-USER
+CREATE TABLE app_user_role
+(
+    USERNAME VARCHAR(255) NOT NULL REFERENCES app_user (USERNAME) ON DELETE CASCADE,
+    ROLE VARCHAR(50) NOT NULL,
+    PRIMARY KEY (USERNAME, ROLE)
+);
@@ -0,0 +1,10 @@
+-- Notes too long for the CONTENT column keep only a preview there, and their full content in
+-- note_content. CONTENT_LENGTH is the full content's length in UTF-8 bytes, NULL for inline notes.
+ALTER TABLE note ADD COLUMN CONTENT_LENGTH BIGINT;
+
+-- Full content of large notes, gzip-compressed; kept apart so listing notes never reads it
+CREATE TABLE note_content
+(
+    ID BIGINT PRIMARY KEY REFERENCES note (ID) ON DELETE CASCADE,
+    BODY BLOB NOT NULL
+);
@@ -0,0 +1,86 @@
+package com.linuxwizards.simplenotesapi;
+
+import com.jayway.jsonpath.JsonPath;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import java.util.Arrays;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Compares p50/p99 latency of GET /notes/{id} authenticated with HTTP Basic and with an access token.
+ * Run with {@code ./gradlew loadTest}.
+ */
+@Tag("load")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class AuthLatencyLoadTest {
+    private static final int warmupRequests = 50;
+    private static final int measuredRequests = 500;
+
+    @Autowired
+    TestRestTemplate restTemplate;
+
+    @Autowired
+    CredentialCache credentialCache;
+
+    @Test
+    void tokenAuthShouldBeFasterThanBasicAuth() {
+        String token = JsonPath.parse(restTemplate
+                .withBasicAuth("sarah1", "abc123")
+                .getForEntity("/login", String.class)
+                .getBody()).read("$.accessToken");
+        HttpHeaders headers = new HttpHeaders();
+        headers.setBearerAuth(token);
+
+        long[] basic = measure(() -> {
+            credentialCache.evictAll();
+            return restTemplate.withBasicAuth("sarah1", "abc123").getForEntity("/notes/99", String.class);
+        });
+        long[] basicCached = measure(() ->
+                restTemplate.withBasicAuth("sarah1", "abc123").getForEntity("/notes/99", String.class));
+        long[] bearer = measure(() ->
+                restTemplate.exchange("/notes/99", HttpMethod.GET, new HttpEntity<>(headers), String.class));
+
+        report("basic", basic);
+        report("basic (cached)", basicCached);
+        report("token", bearer);
+
+        assertThat(percentile(bearer, 50)).isLessThan(percentile(basic, 50));
+    }
+
+    private static long[] measure(Supplier<ResponseEntity<String>> request) {
+        for (int i = 0; i < warmupRequests; i++) {
+            request.get();
+        }
+
+        long[] latencies = new long[measuredRequests];
+        for (int i = 0; i < measuredRequests; i++) {
+            long start = System.nanoTime();
+            ResponseEntity<String> response = request.get();
+            latencies[i] = System.nanoTime() - start;
+            assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        }
+        Arrays.sort(latencies);
+        return latencies;
+    }
+
+    private static long percentile(long[] sortedLatencies, int percentile) {
+        int index = (int) Math.ceil(percentile / 100.0 * sortedLatencies.length) - 1;
+        return sortedLatencies[Math.max(index, 0)];
+    }
+
+    private static void report(String name, long[] sortedLatencies) {
+        System.out.printf("%-16s p50 %8.3f ms   p99 %8.3f ms%n", name,
+                percentile(sortedLatencies, 50) / 1e6, percentile(sortedLatencies, 99) / 1e6);
+    }
+}
@@ -0,0 +1,58 @@
+package com.linuxwizards.simplenotesapi;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.annotation.DirtiesContext;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Compares creating 1,000 notes one request at a time with a single POST /notes/batch.
+ * Run with {@code ./gradlew loadTest}.
+ */
+@Tag("load")
+@DirtiesContext
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class BatchLoadTest {
+    private static final int notes = 1000;
+
+    @Autowired
+    TestRestTemplate restTemplate;
+
+    @Test
+    void oneBatchShouldBeFasterThanSingleRequests() {
+        long start = System.nanoTime();
+        for (int i = 0; i < notes; i++) {
+            ResponseEntity<Void> response = restTemplate
+                    .withBasicAuth("sarah1", "abc123")
+                    .postForEntity("/notes", new Note(null, "Single " + i, "Content " + i, null), Void.class);
+            assertThat(response.getStatusCode()).isEqualTo(HttpStatus.CREATED);
+        }
+        long singleNanos = System.nanoTime() - start;
+
+        List<NoteBatchOperation> operations = new ArrayList<>();
+        for (int i = 0; i < notes; i++) {
+            operations.add(new NoteBatchOperation(NoteBatchOperation.Type.CREATE, null, "Batch " + i, "Content " + i));
+        }
+        start = System.nanoTime();
+        ResponseEntity<NoteBatchResult[]> response = restTemplate
+                .withBasicAuth("sarah1", "abc123")
+                .postForEntity("/notes/batch", operations, NoteBatchResult[].class);
+        long batchNanos = System.nanoTime() - start;
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(response.getBody()).hasSize(notes).allMatch(result -> result.status() == 201);
+
+        System.out.printf("%d single POSTs: %.1f ms, one batch: %.1f ms (%.1fx)%n", notes,
+                singleNanos / 1e6, batchNanos / 1e6, (double) singleNanos / batchNanos);
+        assertThat(batchNanos).isLessThan(singleNanos);
+    }
+}
@@ -0,0 +1,79 @@
+package com.linuxwizards.simplenotesapi;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Measures GET /notes/{id} throughput with and without cached credential verification.
+ * Run with {@code ./gradlew loadTest}.
+ */
+@Tag("load")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class CredentialCacheLoadTest {
+    private static final int threads = 8;
+    private static final int requestsPerThread = 50;
+
+    @Autowired
+    TestRestTemplate restTemplate;
+
+    @Autowired
+    CredentialCache credentialCache;
+
+    @Test
+    void cachedVerificationShouldIncreaseThroughput() throws Exception {
+        // Warm up the JIT and the connection pool
+        run(false);
+
+        double uncached = run(true);
+        double cached = run(false);
+
+        System.out.printf("GET /notes/99: uncached %.1f req/s, cached %.1f req/s (%.1fx)%n",
+                uncached, cached, cached / uncached);
+        System.out.printf("Credential cache: %d hits, %d misses%n",
+                credentialCache.hitCount(), credentialCache.missCount());
+
+        assertThat(credentialCache.hitCount()).isPositive();
+        assertThat(cached).isGreaterThan(uncached);
+    }
+
+    private double run(boolean evictBeforeEachRequest) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            long start = System.nanoTime();
+            for (int i = 0; i < threads; i++) {
+                futures.add(executor.submit(() -> {
+                    for (int j = 0; j < requestsPerThread; j++) {
+                        if (evictBeforeEachRequest) {
+                            credentialCache.evictAll();
+                        }
+                        ResponseEntity<String> response = restTemplate
+                                .withBasicAuth("sarah1", "abc123")
+                                .getForEntity("/notes/99", String.class);
+                        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+            double seconds = (System.nanoTime() - start) / 1e9;
+            return threads * requestsPerThread / seconds;
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.linuxwizards.simplenotesapi;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class CredentialCacheTest {
+    private MutableClock clock;
+    private CredentialCache cache;
+
+    @BeforeEach
+    void setUp() {
+        clock = new MutableClock();
+        cache = new CredentialCache(2, Duration.ofMinutes(5), clock);
+    }
+
+    @Test
+    void shouldHitOnlyForTheSameCredentialsAndFingerprint() {
+        cache.put("sarah1", "abc123", "hash|ROLE_NOTES-USER");
+
+        assertThat(cache.contains("sarah1", "abc123", "hash|ROLE_NOTES-USER")).isTrue();
+        assertThat(cache.contains("sarah1", "BAD-PASSWORD", "hash|ROLE_NOTES-USER")).isFalse();
+        assertThat(cache.hitCount()).isEqualTo(1);
+        assertThat(cache.missCount()).isEqualTo(1);
+    }
+
+    @Test
+    void shouldDropEntriesWhenPasswordOrRoleChanges() {
+        cache.put("sarah1", "abc123", "hash|ROLE_NOTES-USER");
+
+        assertThat(cache.contains("sarah1", "abc123", "hash|ROLE_LOCKED-USER")).isFalse();
+        assertThat(cache.size()).isZero();
+    }
+
+    @Test
+    void shouldExpireEntriesAfterTtl() {
+        cache.put("sarah1", "abc123", "hash|ROLE_NOTES-USER");
+        clock.advance(Duration.ofMinutes(6));
+
+        assertThat(cache.contains("sarah1", "abc123", "hash|ROLE_NOTES-USER")).isFalse();
+    }
+
+    @Test
+    void shouldStayBounded() {
+        cache.put("sarah1", "abc123", "a");
+        cache.put("kumar2", "xyz789", "b");
+        cache.put("hank-cant-note", "qrs456", "c");
+
+        assertThat(cache.size()).isEqualTo(2);
+        assertThat(cache.evictionCount()).isEqualTo(1);
+        assertThat(cache.contains("sarah1", "abc123", "a")).isFalse();
+    }
+
+    @Test
+    void shouldEvictAllEntriesOfAUser() {
+        cache.put("sarah1", "abc123", "a");
+        cache.put("kumar2", "xyz789", "b");
+        cache.evict("sarah1");
+
+        assertThat(cache.contains("sarah1", "abc123", "a")).isFalse();
+        assertThat(cache.contains("kumar2", "xyz789", "b")).isTrue();
+    }
+
+    private static class MutableClock extends Clock {
+        private Instant now = Instant.parse("2024-01-01T00:00:00Z");
+
+        void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package com.linuxwizards.simplenotesapi;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Measures how much space large notes take and whether having them makes listing slower.
+ * {@code -Dnotes.large.count} notes of {@code -Dnotes.large.megabytes} each (20 of 4 MB by default)
+ * are created among 10,000 small ones. Run with {@code ./gradlew loadTest}.
+ */
+@Tag("load")
+@DirtiesContext
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class LargeNoteLoadTest {
+    private static final String owner = "sarah1";
+    private static final int smallNotes = 10_000;
+    private static final int largeNotes = Integer.getInteger("notes.large.count", 20);
+    private static final int largeNoteSize = Integer.getInteger("notes.large.megabytes", 4) * 1024 * 1024;
+    private static final int pageSize = 20;
+    private static final int measuredRequests = 200;
+    private static final String[] words = ("lorem ipsum dolor sit amet consectetur adipiscing elit sed do eiusmod "
+            + "tempor incididunt ut labore et dolore magna aliqua meeting notes agenda action item owner "
+            + "deadline review draft release migration database index latency").split(" ");
+
+    @Autowired
+    TestRestTemplate restTemplate;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void seed() {
+        List<Object[]> rows = new ArrayList<>();
+        for (int i = 0; i < smallNotes; i++) {
+            rows.add(new Object[]{"Title " + i, "Content " + i, owner});
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO note (title, content, owner) VALUES (?, ?, ?)", rows);
+    }
+
+    @Test
+    void largeNotesShouldBeStoredCompressedAndNotSlowDownLists() {
+        long before = median("/notes?limit=" + pageSize);
+        long beforeOffset = median("/notes?page=0&size=" + pageSize);
+
+        Random random = new Random(42);
+        long start = System.nanoTime();
+        for (int i = 0; i < largeNotes; i++) {
+            ResponseEntity<Void> response = restTemplate
+                    .withBasicAuth(owner, "abc123")
+                    .postForEntity("/notes", new Note(null, "Large " + i, text(random), null), Void.class);
+            assertThat(response.getStatusCode()).isEqualTo(HttpStatus.CREATED);
+        }
+        System.out.printf("Created %d notes of %d MB in %.1f s%n",
+                largeNotes, largeNoteSize / (1024 * 1024), (System.nanoTime() - start) / 1e9);
+
+        Map<String, Object> sizes = jdbcTemplate.queryForMap(
+                "SELECT SUM(n.content_length) AS raw, SUM(OCTET_LENGTH(c.body)) AS stored "
+                        + "FROM note n JOIN note_content c ON c.id = n.id");
+        long raw = ((Number) sizes.get("RAW")).longValue();
+        long stored = ((Number) sizes.get("STORED")).longValue();
+        System.out.printf("Large note content: %d MB raw, %d MB stored (%.1f%%)%n",
+                raw / (1024 * 1024), stored / (1024 * 1024), 100.0 * stored / raw);
+
+        // The first pages now consist of large notes only
+        long after = median("/notes?limit=" + pageSize);
+        long afterOffset = median("/notes?page=0&size=" + pageSize);
+        System.out.printf("cursor page: %.3f ms before, %.3f ms with large notes%n", before / 1e6, after / 1e6);
+        System.out.printf("offset page: %.3f ms before, %.3f ms with large notes%n",
+                beforeOffset / 1e6, afterOffset / 1e6);
+
+        String page = restTemplate
+                .withBasicAuth(owner, "abc123")
+                .getForObject("/notes?limit=" + pageSize, String.class);
+        System.out.printf("First page with large notes: %d bytes%n", page.length());
+
+        assertThat(stored).isLessThan(raw);
+        assertThat(page.length()).isLessThan(pageSize * 2 * NoteContentStore.maxInlineLength);
+    }
+
+    private static String text(Random random) {
+        StringBuilder text = new StringBuilder(largeNoteSize + 16);
+        while (text.length() < largeNoteSize) {
+            text.append(words[random.nextInt(words.length)]).append(random.nextInt(20) == 0 ? ".\n" : " ");
+        }
+        return text.toString();
+    }
+
+    private long median(String url) {
+        long[] latencies = new long[measuredRequests];
+        for (int i = 0; i < measuredRequests; i++) {
+            long start = System.nanoTime();
+            ResponseEntity<String> response = restTemplate
+                    .withBasicAuth(owner, "abc123")
+                    .getForEntity(url, String.class);
+            latencies[i] = System.nanoTime() - start;
+            assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        }
+        Arrays.sort(latencies);
+        return latencies[measuredRequests / 2];
+    }
+}
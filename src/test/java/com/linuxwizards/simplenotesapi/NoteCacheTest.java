@@ -0,0 +1,95 @@
+package com.linuxwizards.simplenotesapi;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class NoteCacheTest {
+    private final Note sarahsNote = new Note(99L, "This is a title", "This is a note", "sarah1");
+    private final Note kumarsNote = new Note(102L, "Kumar's title", "Kumar's note", "kumar2");
+
+    private NoteCache cache;
+
+    @BeforeEach
+    void setUp() {
+        cache = new NoteCache(10_000, Duration.ofMinutes(10));
+    }
+
+    @Test
+    void shouldServeRepeatedReadsFromTheCache() {
+        cache.getNote("sarah1", 99L, () -> sarahsNote);
+        Note cached = cache.getNote("sarah1", 99L, () -> {
+            throw new AssertionError("should not load again");
+        });
+
+        assertThat(cached).isEqualTo(sarahsNote);
+        assertThat(cache.hitCount()).isEqualTo(1);
+        assertThat(cache.missCount()).isEqualTo(1);
+    }
+
+    @Test
+    void shouldKeepOwnersApart() {
+        cache.getNote("sarah1", 99L, () -> sarahsNote);
+
+        assertThat(cache.getNote("kumar2", 99L, () -> null)).isNull();
+        assertThat(cache.getNote("kumar2", 102L, () -> kumarsNote)).isEqualTo(kumarsNote);
+    }
+
+    @Test
+    void shouldDropAnOwnersEntriesOnWrite() {
+        cache.getNote("sarah1", 99L, () -> sarahsNote);
+        cache.getPage("sarah1", "first:20", () -> List.of(sarahsNote));
+        cache.getNote("kumar2", 102L, () -> kumarsNote);
+
+        Note updated = new Note(99L, "Updated title", "Updated content", "sarah1");
+        cache.onNoteChanged(NoteChangedEvent.updated(updated));
+
+        assertThat(cache.getNote("sarah1", 99L, () -> updated)).isEqualTo(updated);
+        assertThat(cache.getPage("sarah1", "first:20", () -> List.of(updated))).containsExactly(updated);
+        assertThat(cache.getNote("kumar2", 102L, () -> null)).isEqualTo(kumarsNote);
+    }
+
+    @Test
+    void shouldNotCacheALoadThatRacedWithAWrite() {
+        Note loaded = cache.getNote("sarah1", 99L, () -> {
+            // The owner writes while the stale value is being loaded
+            cache.invalidate("sarah1");
+            return sarahsNote;
+        });
+        assertThat(loaded).isEqualTo(sarahsNote);
+
+        Note updated = new Note(99L, "Updated title", "Updated content", "sarah1");
+        assertThat(cache.getNote("sarah1", 99L, () -> updated)).isEqualTo(updated);
+    }
+
+    @Test
+    void shouldKeepNothingForOwnersWithoutLoadsInProgress() {
+        for (int i = 0; i < 1000; i++) {
+            String owner = "owner-" + i;
+            cache.getNote(owner, i, () -> new Note(1L, "Title", "Content", owner));
+            cache.invalidate(owner);
+        }
+        assertThatThrownBy(() -> cache.getNote("sarah1", 99L, () -> {
+            throw new IllegalStateException("database down");
+        })).isInstanceOf(IllegalStateException.class);
+
+        assertThat(cache.ownersLoading()).isZero();
+        assertThat(cache.weight()).isZero();
+    }
+
+    @Test
+    void shouldEvictLeastRecentlyUsedEntriesBeyondTheWeightLimit() {
+        NoteCache smallCache = new NoteCache(300, Duration.ofMinutes(10));
+        smallCache.getNote("sarah1", 99L, () -> sarahsNote);
+        smallCache.getNote("kumar2", 102L, () -> kumarsNote);
+
+        assertThat(smallCache.evictionCount()).isEqualTo(1);
+        assertThat(smallCache.weight()).isLessThanOrEqualTo(300);
+        assertThat(smallCache.getNote("kumar2", 102L, () -> null)).isEqualTo(kumarsNote);
+    }
+}
@@ -0,0 +1,75 @@
+package com.linuxwizards.simplenotesapi;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DirtiesContext
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class NoteChangeLogTest {
+    @Autowired
+    TestRestTemplate restTemplate;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    NoteChangeLog noteChangeLog;
+
+    @Test
+    void compactionShouldKeepTheLatestChangeOfEveryNote() {
+        long before = noteChangeLog.changesSince("sarah1", noteChangeLog.horizon(), 100).highWaterMark();
+        HttpEntity<Note> request = new HttpEntity<>(new Note(null, "Edited", "Edited content", null));
+        for (int i = 0; i < 3; i++) {
+            restTemplate
+                    .withBasicAuth("sarah1", "abc123")
+                    .exchange("/notes/99", HttpMethod.PUT, request, Void.class);
+        }
+
+        noteChangeLog.compact();
+
+        assertThat(jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM note_change WHERE note_id = 99", Integer.class)).isEqualTo(1);
+        NoteChanges changes = noteChangeLog.changesSince("sarah1", before, 100);
+        assertThat(changes.notes()).extracting(Note::id).containsExactly(99L);
+        assertThat(noteChangeLog.changesSince("sarah1", noteChangeLog.horizon(), 100).notes())
+                .extracting(Note::id).containsExactlyInAnyOrder(99L, 100L, 101L);
+    }
+
+    @Test
+    void syncsFromBeforeExpiredTombstonesShouldStartOver() {
+        long before = noteChangeLog.changesSince("kumar2", noteChangeLog.horizon(), 100).highWaterMark();
+        restTemplate
+                .withBasicAuth("kumar2", "xyz789")
+                .exchange("/notes/102", HttpMethod.DELETE, null, Void.class);
+        jdbcTemplate.update("UPDATE note_change SET changed_at = DATEADD('DAY', -31, CURRENT_TIMESTAMP) "
+                + "WHERE note_id = 102 AND type = 'DELETED'");
+
+        noteChangeLog.compact();
+
+        assertThat(noteChangeLog.horizon()).isGreaterThan(before);
+        ResponseEntity<String> response = restTemplate
+                .withBasicAuth("kumar2", "xyz789")
+                .getForEntity("/notes/changes?since=" + before, String.class);
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.GONE);
+
+        // Starting over works, and a client that synced after the tombstone is unaffected
+        response = restTemplate
+                .withBasicAuth("kumar2", "xyz789")
+                .getForEntity("/notes/changes", String.class);
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        response = restTemplate
+                .withBasicAuth("kumar2", "xyz789")
+                .getForEntity("/notes/changes?since=" + noteChangeLog.horizon(), String.class);
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+    }
+}
@@ -0,0 +1,100 @@
+package com.linuxwizards.simplenotesapi;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpMethod;
+import org.springframework.test.annotation.DirtiesContext;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Iterator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DirtiesContext
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class NoteChangeStreamTest {
+    @LocalServerPort
+    int port;
+
+    @Autowired
+    TestRestTemplate restTemplate;
+
+    @Autowired
+    NoteChangeLog noteChangeLog;
+
+    private final HttpClient httpClient = HttpClient.newHttpClient();
+
+    @Test
+    void shouldPushTheOwnersChangesOnly() throws Exception {
+        HttpResponse<Stream<String>> stream = open("sarah1", "abc123", null);
+        assertThat(stream.statusCode()).isEqualTo(200);
+        Iterator<String> lines = stream.body().iterator();
+
+        HttpEntity<Note> kumarsUpdate = new HttpEntity<>(new Note(null, "Kumar's edit", "Not for sarah", null));
+        restTemplate
+                .withBasicAuth("kumar2", "xyz789")
+                .exchange("/notes/102", HttpMethod.PUT, kumarsUpdate, Void.class);
+        HttpEntity<Note> sarahsUpdate = new HttpEntity<>(new Note(null, "Pushed title", "Pushed content", null));
+        restTemplate
+                .withBasicAuth("sarah1", "abc123")
+                .exchange("/notes/99", HttpMethod.PUT, sarahsUpdate, Void.class);
+
+        String data = readUntil(lines, line -> line.startsWith("data:"));
+        assertThat(data).contains("Pushed title").doesNotContain("Kumar's edit");
+        stream.body().close();
+    }
+
+    @Test
+    void shouldReplayChangesAfterTheLastEventId() throws Exception {
+        long before = noteChangeLog.highWaterMark("sarah1");
+        restTemplate
+                .withBasicAuth("sarah1", "abc123")
+                .exchange("/notes/101", HttpMethod.DELETE, null, Void.class);
+
+        HttpResponse<Stream<String>> stream = open("sarah1", "abc123", before);
+        Iterator<String> lines = stream.body().iterator();
+
+        String id = readUntil(lines, line -> line.startsWith("id:"));
+        assertThat(Long.parseLong(id.substring("id:".length()).trim())).isGreaterThan(before);
+        String data = readUntil(lines, line -> line.startsWith("data:"));
+        assertThat(data).contains("\"deleted\":[101]");
+        stream.body().close();
+    }
+
+    private HttpResponse<Stream<String>> open(String username, String password, Long lastEventId) throws Exception {
+        String credentials = Base64.getEncoder()
+                .encodeToString((username + ":" + password).getBytes(StandardCharsets.UTF_8));
+        HttpRequest.Builder request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/notes/stream"))
+                .header("Authorization", "Basic " + credentials)
+                .header("Accept", "text/event-stream");
+        if (lastEventId != null) {
+            request.header("Last-Event-ID", Long.toString(lastEventId));
+        }
+        return httpClient.sendAsync(request.build(), HttpResponse.BodyHandlers.ofLines()).get(10, TimeUnit.SECONDS);
+    }
+
+    private static String readUntil(Iterator<String> lines, Predicate<String> condition) throws Exception {
+        return CompletableFuture.supplyAsync(() -> {
+            while (lines.hasNext()) {
+                String line = lines.next();
+                if (condition.test(line)) {
+                    return line;
+                }
+            }
+            throw new AssertionError("Stream ended");
+        }).get(10, TimeUnit.SECONDS);
+    }
+}
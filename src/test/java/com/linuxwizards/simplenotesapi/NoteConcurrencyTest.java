@@ -0,0 +1,110 @@
+package com.linuxwizards.simplenotesapi;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DirtiesContext
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class NoteConcurrencyTest {
+    private static final int writers = 16;
+
+    @Autowired
+    TestRestTemplate restTemplate;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @Test
+    void parallelUpdatesShouldNeverWriteAcrossOwners() throws Exception {
+        List<Callable<HttpStatusCode>> requests = new ArrayList<>();
+        for (int i = 0; i < writers; i++) {
+            Note sarahsUpdate = new Note(null, "sarah " + i, "content " + i, null);
+            Note kumarsUpdate = new Note(null, "kumar " + i, "content " + i, null);
+            requests.add(() -> restTemplate
+                    .withBasicAuth("sarah1", "abc123")
+                    .exchange("/notes/100", HttpMethod.PUT, new HttpEntity<>(sarahsUpdate), Void.class)
+                    .getStatusCode());
+            requests.add(() -> restTemplate
+                    .withBasicAuth("kumar2", "xyz789")
+                    .exchange("/notes/100", HttpMethod.PUT, new HttpEntity<>(kumarsUpdate), Void.class)
+                    .getStatusCode());
+        }
+
+        List<HttpStatusCode> statuses = runConcurrently(requests);
+
+        assertThat(statuses).filteredOn(HttpStatus.NO_CONTENT::equals).hasSize(writers);
+        assertThat(statuses).filteredOn(HttpStatus.NOT_FOUND::equals).hasSize(writers);
+
+        Map<String, Object> row = jdbcTemplate.queryForMap("SELECT title, content, owner FROM note WHERE id = 100");
+        assertThat(row.get("OWNER")).isEqualTo("sarah1");
+        assertThat((String) row.get("TITLE")).startsWith("sarah ");
+        // Title and content always come from the same request - no torn or lost update
+        assertThat(((String) row.get("TITLE")).substring("sarah ".length()))
+                .isEqualTo(((String) row.get("CONTENT")).substring("content ".length()));
+    }
+
+    @Test
+    void parallelDeletesShouldSucceedExactlyOnce() throws Exception {
+        List<Callable<HttpStatusCode>> requests = new ArrayList<>();
+        for (int i = 0; i < writers; i++) {
+            requests.add(() -> restTemplate
+                    .withBasicAuth("kumar2", "xyz789")
+                    .exchange("/notes/101", HttpMethod.DELETE, null, Void.class)
+                    .getStatusCode());
+            requests.add(() -> restTemplate
+                    .withBasicAuth("sarah1", "abc123")
+                    .exchange("/notes/101", HttpMethod.DELETE, null, Void.class)
+                    .getStatusCode());
+        }
+
+        List<HttpStatusCode> statuses = runConcurrently(requests);
+
+        assertThat(statuses).filteredOn(HttpStatus.NO_CONTENT::equals).hasSize(1);
+        assertThat(statuses).filteredOn(HttpStatus.NOT_FOUND::equals).hasSize(2 * writers - 1);
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM note WHERE id = 101", Integer.class)).isZero();
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM note WHERE owner = 'kumar2'", Integer.class))
+                .isEqualTo(1);
+    }
+
+    private static List<HttpStatusCode> runConcurrently(List<Callable<HttpStatusCode>> requests) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(requests.size());
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<HttpStatusCode>> futures = new ArrayList<>();
+            for (Callable<HttpStatusCode> request : requests) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    return request.call();
+                }));
+            }
+            start.countDown();
+
+            List<HttpStatusCode> statuses = new ArrayList<>();
+            for (Future<HttpStatusCode> future : futures) {
+                statuses.add(future.get());
+            }
+            return statuses;
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
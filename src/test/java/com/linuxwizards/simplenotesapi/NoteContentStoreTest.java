@@ -0,0 +1,26 @@
+package com.linuxwizards.simplenotesapi;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class NoteContentStoreTest {
+    @Test
+    void shouldCountUtf8BytesWithoutEncoding() {
+        for (String content : new String[]{"plain", "Ünïcode", "€ and 😀", "unpaired \uD83D surrogate"}) {
+            assertThat(NoteContentStore.utf8Length(content))
+                    .isEqualTo(content.getBytes(StandardCharsets.UTF_8).length);
+        }
+    }
+
+    @Test
+    void shouldOnlyAcceptGzipWhenNotRefused() {
+        assertThat(NoteContentStore.acceptsGzip("gzip, deflate, br")).isTrue();
+        assertThat(NoteContentStore.acceptsGzip("br;q=1.0, GZIP;q=0.5")).isTrue();
+        assertThat(NoteContentStore.acceptsGzip("gzip;q=0")).isFalse();
+        assertThat(NoteContentStore.acceptsGzip("identity")).isFalse();
+        assertThat(NoteContentStore.acceptsGzip(null)).isFalse();
+    }
+}
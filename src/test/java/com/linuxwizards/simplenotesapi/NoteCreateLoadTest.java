@@ -0,0 +1,84 @@
+package com.linuxwizards.simplenotesapi;
+
+import com.jayway.jsonpath.JsonPath;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Measures inserts per second and p99 latency of concurrent {@code POST /notes} against a file database.
+ * Subclasses run it with the create pipeline on and off; compare their output.
+ * Run with {@code ./gradlew loadTest}.
+ */
+@Tag("load")
+abstract class NoteCreateLoadTest {
+    private static final int clients = 64;
+    private static final int createsPerClient = 500;
+
+    @Value("${notes.create-pipeline.enabled}")
+    boolean pipelined;
+
+    @Autowired
+    TestRestTemplate restTemplate;
+
+    @Test
+    void shouldSustainConcurrentCreates() throws Exception {
+        // A token keeps Argon2 out of the measurement
+        String token = JsonPath.parse(restTemplate
+                .withBasicAuth("sarah1", "abc123")
+                .getForEntity("/login", String.class)
+                .getBody()).read("$.accessToken");
+        HttpHeaders headers = new HttpHeaders();
+        headers.setBearerAuth(token);
+
+        long[] latencies = new long[clients * createsPerClient];
+        long start;
+        try (ExecutorService executor = Executors.newFixedThreadPool(clients)) {
+            CountDownLatch go = new CountDownLatch(1);
+            List<Future<?>> results = new ArrayList<>();
+            for (int client = 0; client < clients; client++) {
+                int offset = client * createsPerClient;
+                results.add(executor.submit(() -> {
+                    go.await();
+                    for (int i = 0; i < createsPerClient; i++) {
+                        HttpEntity<Note> request =
+                                new HttpEntity<>(new Note(null, "Load " + (offset + i), "Content", null), headers);
+                        long requestStart = System.nanoTime();
+                        ResponseEntity<Void> response = restTemplate.postForEntity("/notes", request, Void.class);
+                        latencies[offset + i] = System.nanoTime() - requestStart;
+                        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.CREATED);
+                    }
+                    return null;
+                }));
+            }
+
+            start = System.nanoTime();
+            go.countDown();
+            for (Future<?> result : results) {
+                result.get();
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+
+        Arrays.sort(latencies);
+        System.out.printf("pipeline %s: %d creates in %.2f s, %.0f inserts/s, p50 %.2f ms, p99 %.2f ms%n",
+                pipelined ? "on" : "off", latencies.length, elapsed / 1e9, latencies.length / (elapsed / 1e9),
+                latencies[latencies.length / 2] / 1e6, latencies[latencies.length * 99 / 100] / 1e6);
+    }
+}
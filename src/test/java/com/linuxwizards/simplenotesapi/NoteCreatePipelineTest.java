@@ -0,0 +1,145 @@
+package com.linuxwizards.simplenotesapi;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.annotation.DirtiesContext;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DirtiesContext
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = "notes.create-pipeline.enabled=true")
+class NoteCreatePipelineTest {
+    private static final int creates = 200;
+
+    @Autowired
+    TestRestTemplate restTemplate;
+
+    @Test
+    void concurrentCreatesShouldEachGetTheirOwnNote() throws Exception {
+        List<Future<ResponseEntity<Void>>> responses = new ArrayList<>();
+        try (ExecutorService executor = Executors.newFixedThreadPool(32)) {
+            for (int i = 0; i < creates; i++) {
+                Note note = new Note(null, "Batched " + i, "Content " + i, null);
+                responses.add(executor.submit(() -> restTemplate
+                        .withBasicAuth("sarah1", "abc123")
+                        .postForEntity("/notes", note, Void.class)));
+            }
+        }
+
+        Set<URI> locations = new HashSet<>();
+        for (Future<ResponseEntity<Void>> response : responses) {
+            assertThat(response.get().getStatusCode()).isEqualTo(HttpStatus.CREATED);
+            locations.add(response.get().getHeaders().getLocation());
+        }
+        assertThat(locations).hasSize(creates);
+
+        URI location = locations.iterator().next();
+        ResponseEntity<Note> created = restTemplate
+                .withBasicAuth("sarah1", "abc123")
+                .getForEntity(location, Note.class);
+        assertThat(created.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(created.getBody().title()).startsWith("Batched ");
+        assertThat(created.getBody().owner()).isEqualTo("sarah1");
+    }
+
+    @Test
+    void shouldRefuseCreatesWhenTheQueueIsFull() {
+        // Not started, so nothing drains the queue
+        NoteCreatePipeline pipeline = new NoteCreatePipeline(null, false, 10, Duration.ofMillis(2), 1,
+                Duration.ofSeconds(5));
+
+        assertThat(pipeline.submit(new Note(null, "First", "Queued", "sarah1"))).isNotNull();
+        assertThat(pipeline.submit(new Note(null, "Second", "Refused", "sarah1"))).isNull();
+    }
+
+    @Test
+    void createsShouldTimeOutRatherThanWaitForAStuckWriter() {
+        NoteCreatePipeline pipeline = new NoteCreatePipeline(null, false, 10, Duration.ofMillis(2), 10,
+                Duration.ofMillis(50));
+
+        CompletableFuture<Note> pending = pipeline.submit(new Note(null, "Stuck", "Never written", "sarah1"));
+
+        assertThatThrownBy(pending::join).hasCauseInstanceOf(TimeoutException.class);
+    }
+
+    @Test
+    void createsTakenByTheWriterShouldWaitForTheirBatchRatherThanTimeOut() throws Exception {
+        CountDownLatch taken = new CountDownLatch(1);
+        CountDownLatch committed = new CountDownLatch(1);
+        NoteBatchWriter writer = new NoteBatchWriter(null, null, null) {
+            @Override
+            List<Note> create(List<Note> notes) {
+                taken.countDown();
+                try {
+                    committed.await();
+                } catch (InterruptedException e) {
+                    throw new IllegalStateException(e);
+                }
+                return notes.stream().map(note -> new Note(1L, note.title(), note.content(), note.owner(), 0L)).toList();
+            }
+        };
+        NoteCreatePipeline pipeline = new NoteCreatePipeline(writer, true, 10, Duration.ofMillis(2), 10,
+                Duration.ofMillis(50));
+        pipeline.start();
+        try {
+            CompletableFuture<Note> pending = pipeline.submit(new Note(null, "Slow", "Written late", "sarah1"));
+            assertThat(taken.await(5, TimeUnit.SECONDS)).isTrue();
+
+            // Well past the timeout, with the write still running
+            Thread.sleep(200);
+            assertThat(pending).isNotDone();
+
+            committed.countDown();
+            assertThat(pending.get(5, TimeUnit.SECONDS).id()).isEqualTo(1L);
+        } finally {
+            pipeline.stop();
+        }
+    }
+
+    @Test
+    void theWriterShouldSurviveErrorsInABatch() throws Exception {
+        AtomicBoolean failed = new AtomicBoolean();
+        NoteBatchWriter writer = new NoteBatchWriter(null, null, null) {
+            @Override
+            List<Note> create(List<Note> notes) {
+                if (failed.compareAndSet(false, true)) {
+                    throw new StackOverflowError();
+                }
+                return notes.stream().map(note -> new Note(1L, note.title(), note.content(), note.owner(), 0L)).toList();
+            }
+        };
+        NoteCreatePipeline pipeline = new NoteCreatePipeline(writer, true, 10, Duration.ofMillis(2), 10,
+                Duration.ofSeconds(5));
+        pipeline.start();
+        try {
+            CompletableFuture<Note> first = pipeline.submit(new Note(null, "First", "Fails", "sarah1"));
+            assertThatThrownBy(first::join).hasCauseInstanceOf(StackOverflowError.class);
+
+            CompletableFuture<Note> second = pipeline.submit(new Note(null, "Second", "Written", "sarah1"));
+            assertThat(second.join().id()).isEqualTo(1L);
+        } finally {
+            pipeline.stop();
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package com.linuxwizards.simplenotesapi;
+
+import org.flywaydb.core.Flyway;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Seeds a database with generated notes spread over many owners, for index and load testing.
+ * <p>
+ * Usage: {@code ./gradlew seedNotes -Pargs="<jdbc-url> <notes> <owners>"}. The schema is migrated first,
+ * so the target database may be empty.
+ */
+class NoteDataGenerator {
+    private static final int batchSize = 10_000;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final SplittableRandom random = new SplittableRandom(42);
+
+    NoteDataGenerator(DataSource dataSource) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+    }
+
+    static String owner(int index) {
+        return "owner-" + index;
+    }
+
+    /**
+     * Inserts {@code notes} notes assigned to owners {@code owner-0 .. owner-(owners - 1)}
+     * with a skewed distribution, so some owners have far more notes than others.
+     */
+    void seed(int notes, int owners) {
+        List<Object[]> rows = new ArrayList<>(batchSize);
+        for (int i = 0; i < notes; i++) {
+            // Squaring a uniform value puts most notes on the low-numbered owners
+            double skew = random.nextDouble();
+            int owner = (int) (skew * skew * owners);
+            rows.add(new Object[]{"Title " + i, "Generated content of note " + i, owner(owner)});
+
+            if (rows.size() == batchSize) {
+                insert(rows);
+            }
+        }
+        if (!rows.isEmpty()) {
+            insert(rows);
+        }
+    }
+
+    private void insert(List<Object[]> rows) {
+        jdbcTemplate.batchUpdate("INSERT INTO note (TITLE, CONTENT, OWNER) VALUES (?, ?, ?)", rows);
+        rows.clear();
+    }
+
+    public static void main(String[] args) {
+        if (args.length != 3) {
+            System.err.println("Usage: NoteDataGenerator <jdbc-url> <notes> <owners>");
+            System.exit(1);
+        }
+        DataSource dataSource = new DriverManagerDataSource(args[0], "sa", "");
+        Flyway.configure()
+                .dataSource(dataSource)
+                .baselineOnMigrate(true)
+                .baselineVersion("1")
+                .load()
+                .migrate();
+
+        int notes = Integer.parseInt(args[1]);
+        int owners = Integer.parseInt(args[2]);
+        long start = System.nanoTime();
+        new NoteDataGenerator(dataSource).seed(notes, owners);
+        System.out.printf("Seeded %d notes across %d owners in %.1f s%n", notes, owners,
+                (System.nanoTime() - start) / 1e9);
+    }
+}
@@ -0,0 +1,66 @@
+package com.linuxwizards.simplenotesapi;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpMethod;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Exports more note data than fits in the heap. Run with {@code ./gradlew exportHeapTest},
+ * which limits the test JVM to 64 MB - an export that buffers the notes fails with OutOfMemoryError.
+ */
+@Tag("small-heap")
+@DirtiesContext
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = "spring.datasource.url=jdbc:h2:file:./build/export-heap-test/${random.uuid}")
+class NoteExportHeapTest {
+    private static final int notes = 100_000;
+    private static final String content = "x".repeat(1000);
+
+    @Autowired
+    TestRestTemplate restTemplate;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @Test
+    void exportShouldStreamWithConstantMemory() {
+        // ~100 MB of content, stored on disk
+        List<Object[]> rows = new ArrayList<>();
+        for (int i = 0; i < notes; i++) {
+            rows.add(new Object[]{"Title " + i, content, "sarah1"});
+            if (rows.size() == 1000) {
+                jdbcTemplate.batchUpdate("INSERT INTO note (title, content, owner) VALUES (?, ?, ?)", rows);
+                rows.clear();
+            }
+        }
+
+        Long exported = restTemplate
+                .withBasicAuth("sarah1", "abc123")
+                .execute("/notes/export", HttpMethod.GET, null, response -> {
+                    long lines = 0;
+                    try (BufferedReader reader = new BufferedReader(
+                            new InputStreamReader(response.getBody(), StandardCharsets.UTF_8))) {
+                        while (reader.readLine() != null) {
+                            lines++;
+                        }
+                    }
+                    return lines;
+                });
+
+        // Seeded notes plus the three fixtures
+        assertThat(exported).isEqualTo(notes + 3L);
+    }
+}
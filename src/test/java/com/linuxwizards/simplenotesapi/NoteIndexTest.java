@@ -0,0 +1,68 @@
+package com.linuxwizards.simplenotesapi;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.data.jdbc.DataJdbcTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJdbcTest
+public class NoteIndexTest {
+    private static final String ownerIndex = "PUBLIC.NOTE_OWNER_ID";
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void setUp() {
+        new NoteDataGenerator(dataSource).seed(20_000, 200);
+        jdbcTemplate.execute("ANALYZE");
+    }
+
+    @Test
+    void listingAnOwnersNotesShouldUseTheOwnerIndexInOrder() {
+        String plan = explain("SELECT * FROM note WHERE owner = 'owner-1' ORDER BY id DESC LIMIT 20 OFFSET 40");
+
+        assertThat(plan).contains(ownerIndex).contains("index sorted");
+    }
+
+    @Test
+    void cursorPagesShouldBeAnOwnerIndexRangeScan() {
+        String plan = explain("SELECT * FROM note WHERE owner = 'owner-1' AND id < 5000 ORDER BY id DESC LIMIT 20");
+
+        assertThat(plan).contains(ownerIndex).contains("index sorted");
+    }
+
+    @Test
+    void countingAnOwnersNotesShouldUseTheOwnerIndex() {
+        String plan = explain("SELECT COUNT(*) FROM note WHERE owner = 'owner-1'");
+
+        assertThat(plan).contains(ownerIndex);
+    }
+
+    @Test
+    void lookupsByIdAndOwnerShouldNotScanTheTable() {
+        // The whole row is read either way, so the planner is free to prefer the primary key
+        String plan = explain("SELECT * FROM note WHERE id = 99 AND owner = 'sarah1'");
+
+        assertThat(plan).containsPattern("/\\* PUBLIC\\.\\w+: .*ID = 99").doesNotContain("tableScan");
+    }
+
+    @Test
+    void existenceChecksByIdAndOwnerShouldOnlyReadTheOwnerIndex() {
+        String plan = explain("SELECT id FROM note WHERE id = 99 AND owner = 'sarah1'");
+
+        assertThat(plan).contains(ownerIndex).doesNotContain("tableScan");
+    }
+
+    private String explain(String query) {
+        return jdbcTemplate.queryForObject("EXPLAIN " + query, String.class);
+    }
+}
@@ -0,0 +1,166 @@
+package com.linuxwizards.simplenotesapi;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DirtiesContext
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = {"notes.quota.max-notes=20", "notes.quota.idle-eviction=PT0S"})
+class NoteQuotaTest {
+    private static final int writers = 16;
+
+    @Autowired
+    TestRestTemplate restTemplate;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    NoteQuota quota;
+
+    @Test
+    void usageShouldStayExactUnderParallelWrites() throws Exception {
+        List<Callable<HttpStatusCode>> requests = new ArrayList<>();
+        for (int i = 0; i < writers; i++) {
+            int writer = i;
+            // Every other writer goes over the inline limit, so large notes are counted too
+            String content = writer % 2 == 0 ? "content " + writer : "Ünïcode ".repeat(200 * (writer + 1));
+            requests.add(() -> {
+                URI location = restTemplate
+                        .withBasicAuth("sarah1", "abc123")
+                        .postForLocation("/notes", new Note(null, "note " + writer, content, null));
+                restTemplate
+                        .withBasicAuth("sarah1", "abc123")
+                        .exchange(location, HttpMethod.PUT,
+                                new HttpEntity<>(new Note(null, "updated " + writer, content + content, null)),
+                                Void.class);
+                return writer % 4 == 0
+                        ? restTemplate
+                                .withBasicAuth("sarah1", "abc123")
+                                .exchange(location, HttpMethod.DELETE, null, Void.class)
+                                .getStatusCode()
+                        : HttpStatus.NO_CONTENT;
+            });
+            // Racing updates of the same note, each changing its size
+            requests.add(() -> restTemplate
+                    .withBasicAuth("sarah1", "abc123")
+                    .exchange("/notes/99", HttpMethod.PUT,
+                            new HttpEntity<>(new Note(null, "x".repeat(writer + 1), content, null)), Void.class)
+                    .getStatusCode());
+        }
+
+        List<HttpStatusCode> statuses = runConcurrently(requests);
+
+        assertThat(statuses).containsOnly(HttpStatus.NO_CONTENT);
+        NoteUsage usage = restTemplate
+                .withBasicAuth("sarah1", "abc123")
+                .getForObject("/notes/usage", NoteUsage.class);
+        Map<String, Object> stored = jdbcTemplate.queryForMap(
+                "SELECT COUNT(*) AS notes, SUM(OCTET_LENGTH(title) + COALESCE(content_length, OCTET_LENGTH(content))) "
+                        + "AS bytes FROM note WHERE owner = 'sarah1'");
+        assertThat(usage.notes()).isEqualTo(((Number) stored.get("NOTES")).longValue());
+        assertThat(usage.bytes()).isEqualTo(((Number) stored.get("BYTES")).longValue());
+        assertThat(usage.maxNotes()).isEqualTo(20);
+    }
+
+    @Test
+    void parallelCreatesShouldNeverExceedTheNoteQuota() throws Exception {
+        long existing = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM note WHERE owner = 'kumar2'", Long.class);
+        List<Callable<HttpStatusCode>> requests = new ArrayList<>();
+        for (int i = 0; i < 2 * writers; i++) {
+            Note note = new Note(null, "note " + i, "content " + i, null);
+            requests.add(() -> restTemplate
+                    .withBasicAuth("kumar2", "xyz789")
+                    .postForEntity("/notes", note, Void.class)
+                    .getStatusCode());
+        }
+
+        List<HttpStatusCode> statuses = runConcurrently(requests);
+
+        assertThat(statuses).filteredOn(HttpStatus.CREATED::equals).hasSize((int) (20 - existing));
+        assertThat(statuses).filteredOn(HttpStatus.TOO_MANY_REQUESTS::equals).hasSize((int) (2 * writers - 20 + existing));
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM note WHERE owner = 'kumar2'", Long.class))
+                .isEqualTo(20);
+
+        // Deleting a note makes room for exactly one more
+        ResponseEntity<Void> deleted = restTemplate
+                .withBasicAuth("kumar2", "xyz789")
+                .exchange("/notes/102", HttpMethod.DELETE, null, Void.class);
+        assertThat(deleted.getStatusCode()).isEqualTo(HttpStatus.NO_CONTENT);
+        Note note = new Note(null, "one more", "content", null);
+        assertThat(restTemplate.withBasicAuth("kumar2", "xyz789").postForEntity("/notes", note, Void.class)
+                .getStatusCode()).isEqualTo(HttpStatus.CREATED);
+        assertThat(restTemplate.withBasicAuth("kumar2", "xyz789").postForEntity("/notes", note, Void.class)
+                .getStatusCode()).isEqualTo(HttpStatus.TOO_MANY_REQUESTS);
+    }
+
+    @Test
+    void idleOwnersShouldBeEvictedAndCountedAgainWhenNextNeeded() {
+        String owner = "evicted-owner";
+        assertThat(quota.usage(owner).notes()).isZero();
+        jdbcTemplate.update("INSERT INTO note (title, content, owner) VALUES ('Direct', 'Written behind its back', ?)",
+                owner);
+        assertThat(quota.usage(owner).notes()).isZero();
+
+        quota.reconcile();
+
+        assertThat(quota.usage(owner).notes()).isEqualTo(1);
+    }
+
+    @Test
+    void ownersWithWritesInFlightShouldNeverBeEvicted() {
+        String owner = "busy-owner";
+        assertThat(quota.reserve(owner, 1, 10)).isNull();
+
+        quota.reconcile();
+
+        // Had the entry been dropped, these would be counted from the table, which has no such notes
+        assertThat(quota.usage(owner).notes()).isEqualTo(1);
+        quota.release(owner, 1, 10);
+        assertThat(quota.usage(owner).notes()).isZero();
+    }
+
+    private static List<HttpStatusCode> runConcurrently(List<Callable<HttpStatusCode>> requests) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(requests.size());
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<HttpStatusCode>> futures = new ArrayList<>();
+            for (Callable<HttpStatusCode> request : requests) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    return request.call();
+                }));
+            }
+            start.countDown();
+
+            List<HttpStatusCode> statuses = new ArrayList<>();
+            for (Future<HttpStatusCode> future : futures) {
+                statuses.add(future.get());
+            }
+            return statuses;
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
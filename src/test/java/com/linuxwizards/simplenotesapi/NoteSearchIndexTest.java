@@ -0,0 +1,92 @@
+package com.linuxwizards.simplenotesapi;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class NoteSearchIndexTest {
+    private NoteSearchIndex index;
+
+    @BeforeEach
+    void setUp() {
+        index = new NoteSearchIndex();
+        index.index(new Note(1L, "Shopping list", "Milk, eggs and bread", "sarah1"));
+        index.index(new Note(2L, "Bread recipe", "Flour, water, salt and yeast. Bake the bread.", "sarah1"));
+        index.index(new Note(3L, "Meeting", "Discuss the bakery budget", "sarah1"));
+        index.index(new Note(4L, "Kumar's bread", "Secret bread recipe", "kumar2"));
+    }
+
+    @Test
+    void shouldRankNotesByRelevance() {
+        List<Long> ids = search("sarah1", "bread", null, 10);
+
+        assertThat(ids).containsExactly(2L, 1L);
+    }
+
+    @Test
+    void shouldMatchPrefixesAndRequireEveryTerm() {
+        assertThat(search("sarah1", "bak", null, 10)).containsExactlyInAnyOrder(2L, 3L);
+        assertThat(search("sarah1", "bread recipe", null, 10)).containsExactly(2L);
+        assertThat(search("sarah1", "bread meeting", null, 10)).isEmpty();
+    }
+
+    @Test
+    void shouldOnlySearchTheNotesOfTheOwner() {
+        assertThat(search("kumar2", "bread", null, 10)).containsExactly(4L);
+        assertThat(search("sarah1", "secret", null, 10)).isEmpty();
+        assertThat(search("nobody", "bread", null, 10)).isEmpty();
+    }
+
+    @Test
+    void shouldFollowUpdatesAndDeletes() {
+        index.index(new Note(1L, "Shopping list", "Milk and eggs", "sarah1"));
+        assertThat(search("sarah1", "bread", null, 10)).containsExactly(2L);
+
+        index.remove("sarah1", 2L);
+        assertThat(search("sarah1", "bread", null, 10)).isEmpty();
+    }
+
+    @Test
+    void olderVersionsShouldNeverReplaceNewerOnes() {
+        index.index(new Note(5L, "Groceries", "Apples", "sarah1", 2L));
+        // The listener of an earlier commit running late
+        index.index(new Note(5L, "Groceries", "Pears", "sarah1", 1L));
+
+        assertThat(search("sarah1", "apples", null, 10)).containsExactly(5L);
+        assertThat(search("sarah1", "pears", null, 10)).isEmpty();
+    }
+
+    @Test
+    void notesDeletedDuringARebuildShouldNotBeIndexedByIt() {
+        index.beginRebuild();
+        // Deleted by a live request before the rebuild's scan got to the row it had already read
+        index.remove("sarah1", 6L);
+        index.index(new Note(6L, "Deleted", "Gone already", "sarah1", 0L));
+        index.endRebuild();
+
+        assertThat(search("sarah1", "gone", null, 10)).isEmpty();
+    }
+
+    @Test
+    void shouldPageWithACursor() {
+        List<NoteSearchIndex.Hit> firstPage = index.search("sarah1", "b", null, 2);
+        assertThat(firstPage).hasSize(2);
+
+        NoteSearchIndex.Position position = NoteSearchIndex.Position.decode(
+                NoteSearchIndex.Position.of(firstPage.get(1)).encode());
+        List<NoteSearchIndex.Hit> secondPage = index.search("sarah1", "b", position, 2);
+
+        assertThat(secondPage).hasSize(1);
+        assertThat(firstPage).extracting(hit -> hit.note().id())
+                .doesNotContain(secondPage.get(0).note().id());
+    }
+
+    private List<Long> search(String owner, String query, NoteSearchIndex.Position after, int limit) {
+        return index.search(owner, query, after, limit).stream()
+                .map(hit -> hit.note().id())
+                .toList();
+    }
+}
@@ -0,0 +1,82 @@
+package com.linuxwizards.simplenotesapi;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Compares latency of the first and a deep page for offset paging and cursor paging.
+ * Run with {@code ./gradlew loadTest}.
+ */
+@Tag("load")
+@DirtiesContext
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class PaginationLoadTest {
+    private static final String owner = "sarah1";
+    private static final int pageSize = 20;
+    private static final int notes = 200_000;
+    private static final int deepPage = notes / pageSize - 1;
+    private static final int measuredRequests = 50;
+
+    @Autowired
+    TestRestTemplate restTemplate;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void seed() {
+        List<Object[]> rows = new ArrayList<>();
+        for (int i = 0; i < notes; i++) {
+            rows.add(new Object[]{"Title " + i, "Content " + i, owner});
+            if (rows.size() == 10_000) {
+                jdbcTemplate.batchUpdate("INSERT INTO note (title, content, owner) VALUES (?, ?, ?)", rows);
+                rows.clear();
+            }
+        }
+    }
+
+    @Test
+    void cursorPagingLatencyShouldNotDependOnDepth() {
+        long maxId = jdbcTemplate.queryForObject("SELECT MAX(id) FROM note WHERE owner = ?", Long.class, owner);
+        // Cursor pointing at the same position as the deep offset page
+        String deepCursor = NoteCursor.encode(maxId - (long) deepPage * pageSize + 1);
+
+        long offsetFirst = median("/notes?page=0&size=" + pageSize);
+        long offsetDeep = median("/notes?page=" + deepPage + "&size=" + pageSize);
+        long cursorFirst = median("/notes?limit=" + pageSize);
+        long cursorDeep = median("/notes?limit=" + pageSize + "&after=" + deepCursor);
+
+        System.out.printf("offset paging: page 0 %.3f ms, page %d %.3f ms%n", offsetFirst / 1e6, deepPage, offsetDeep / 1e6);
+        System.out.printf("cursor paging: page 0 %.3f ms, page %d %.3f ms%n", cursorFirst / 1e6, deepPage, cursorDeep / 1e6);
+
+        assertThat(cursorDeep).isLessThan(offsetDeep);
+    }
+
+    private long median(String url) {
+        long[] latencies = new long[measuredRequests];
+        for (int i = 0; i < measuredRequests; i++) {
+            long start = System.nanoTime();
+            ResponseEntity<String> response = restTemplate
+                    .withBasicAuth(owner, "abc123")
+                    .getForEntity(url, String.class);
+            latencies[i] = System.nanoTime() - start;
+            assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        }
+        Arrays.sort(latencies);
+        return latencies[measuredRequests / 2];
+    }
+}
@@ -0,0 +1,11 @@
+package com.linuxwizards.simplenotesapi;
+
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+
+@DirtiesContext
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = {"notes.create-pipeline.enabled=true",
+                "spring.datasource.url=jdbc:h2:file:./build/create-load-test/${random.uuid}"})
+class PipelinedNoteCreateLoadTest extends NoteCreateLoadTest {
+}
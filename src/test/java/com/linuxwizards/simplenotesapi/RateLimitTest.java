@@ -0,0 +1,64 @@
+package com.linuxwizards.simplenotesapi;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.annotation.DirtiesContext;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DirtiesContext
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = {
+                "notes.rate-limit.enabled=true",
+                "notes.rate-limit.reads.capacity=3",
+                "notes.rate-limit.reads.per-second=1",
+                "notes.rate-limit.password-checks.capacity=3",
+                "notes.rate-limit.password-checks.per-second=1"
+        })
+class RateLimitTest {
+    @Autowired
+    TestRestTemplate restTemplate;
+
+    @Test
+    void shouldRejectRequestsOverTheLimitBeforeAuthentication() {
+        for (int i = 0; i < 3; i++) {
+            ResponseEntity<String> response = restTemplate.getForEntity("/notes/102", String.class);
+            assertThat(response.getStatusCode()).isEqualTo(HttpStatus.UNAUTHORIZED);
+        }
+
+        // Rejected without getting to authentication, which would have answered 401
+        ResponseEntity<String> limited = restTemplate.getForEntity("/notes/102", String.class);
+
+        assertThat(limited.getStatusCode()).isEqualTo(HttpStatus.TOO_MANY_REQUESTS);
+        assertThat(limited.getHeaders().getFirst(HttpHeaders.RETRY_AFTER)).isEqualTo("1");
+
+        // A client with credentials has a budget of its own
+        ResponseEntity<String> other = restTemplate
+                .withBasicAuth("sarah1", "abc123")
+                .getForEntity("/notes/99", String.class);
+        assertThat(other.getStatusCode()).isEqualTo(HttpStatus.OK);
+
+        // Made-up usernames each get a bucket, but their password checks share the address's budget
+        for (int i = 0; i < 2; i++) {
+            ResponseEntity<String> guess = restTemplate
+                    .withBasicAuth("guess" + i, "password")
+                    .getForEntity("/notes/99", String.class);
+            assertThat(guess.getStatusCode()).isEqualTo(HttpStatus.UNAUTHORIZED);
+        }
+        ResponseEntity<String> guess = restTemplate
+                .withBasicAuth("guess2", "password")
+                .getForEntity("/notes/99", String.class);
+        assertThat(guess.getStatusCode()).isEqualTo(HttpStatus.TOO_MANY_REQUESTS);
+
+        // Credentials verified before don't need another password check
+        ResponseEntity<String> verified = restTemplate
+                .withBasicAuth("sarah1", "abc123")
+                .getForEntity("/notes/99", String.class);
+        assertThat(verified.getStatusCode()).isEqualTo(HttpStatus.OK);
+    }
+}
@@ -0,0 +1,107 @@
+package com.linuxwizards.simplenotesapi;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class RateLimiterTest {
+    private final AtomicLong nanoTime = new AtomicLong();
+    private RateLimiter rateLimiter;
+
+    @BeforeEach
+    void setUp() {
+        rateLimiter = new RateLimiter(true, Map.of(
+                RateLimiter.Group.READS, new RateLimiter.Limit(5, 10),
+                RateLimiter.Group.WRITES, new RateLimiter.Limit(2, 1),
+                RateLimiter.Group.LOGIN, new RateLimiter.Limit(1, 1)), nanoTime::get);
+    }
+
+    @Test
+    void shouldAllowABurstOfCapacityAndThenRefillAtTheRate() {
+        for (int i = 0; i < 5; i++) {
+            assertThat(rateLimiter.tryAcquire(RateLimiter.Group.READS, "sarah1")).isZero();
+        }
+        assertThat(rateLimiter.tryAcquire(RateLimiter.Group.READS, "sarah1"))
+                .isEqualTo(TimeUnit.MILLISECONDS.toNanos(100));
+
+        nanoTime.addAndGet(TimeUnit.MILLISECONDS.toNanos(100));
+        assertThat(rateLimiter.tryAcquire(RateLimiter.Group.READS, "sarah1")).isZero();
+        assertThat(rateLimiter.tryAcquire(RateLimiter.Group.READS, "sarah1")).isPositive();
+    }
+
+    @Test
+    void clientsAndGroupsShouldHaveSeparateBuckets() {
+        assertThat(rateLimiter.tryAcquire(RateLimiter.Group.LOGIN, "sarah1")).isZero();
+        assertThat(rateLimiter.tryAcquire(RateLimiter.Group.LOGIN, "sarah1")).isPositive();
+
+        assertThat(rateLimiter.tryAcquire(RateLimiter.Group.LOGIN, "kumar2")).isZero();
+        assertThat(rateLimiter.tryAcquire(RateLimiter.Group.READS, "sarah1")).isZero();
+    }
+
+    @Test
+    void shouldEvictOnlyBucketsThatHaveRefilled() {
+        rateLimiter.tryAcquire(RateLimiter.Group.WRITES, "sarah1");
+        rateLimiter.tryAcquire(RateLimiter.Group.READS, "kumar2");
+
+        nanoTime.addAndGet(TimeUnit.MILLISECONDS.toNanos(500));
+        rateLimiter.evictIdle();
+        assertThat(rateLimiter.bucketCount()).isEqualTo(1);
+
+        nanoTime.addAndGet(TimeUnit.SECONDS.toNanos(1));
+        rateLimiter.evictIdle();
+        assertThat(rateLimiter.bucketCount()).isZero();
+    }
+
+    @Test
+    void concurrentClientsShouldNeverGetMoreThanTheCapacity() throws Exception {
+        RateLimiter limiter = new RateLimiter(true, Map.of(
+                RateLimiter.Group.READS, new RateLimiter.Limit(1000, 1),
+                RateLimiter.Group.WRITES, new RateLimiter.Limit(1, 1),
+                RateLimiter.Group.LOGIN, new RateLimiter.Limit(1, 1)), nanoTime::get);
+
+        List<Future<Integer>> granted = new ArrayList<>();
+        try (ExecutorService executor = Executors.newFixedThreadPool(8)) {
+            for (int thread = 0; thread < 8; thread++) {
+                granted.add(executor.submit(() -> {
+                    int count = 0;
+                    for (int i = 0; i < 1000; i++) {
+                        if (limiter.tryAcquire(RateLimiter.Group.READS, "sarah1") == 0) {
+                            count++;
+                        }
+                    }
+                    return count;
+                }));
+            }
+        }
+
+        int total = 0;
+        for (Future<Integer> future : granted) {
+            total += future.get();
+        }
+        assertThat(total).isEqualTo(1000);
+    }
+
+    @Test
+    void clientsShouldBeKeyedByClaimedUsernameAndAddress() {
+        String basic = "Basic " + Base64.getEncoder().encodeToString("sarah1:wrong".getBytes());
+
+        assertThat(RateLimitFilter.client(basic, "10.0.0.1")).isEqualTo("sarah1@10.0.0.1");
+        assertThat(RateLimitFilter.client(null, "10.0.0.1")).isEqualTo("10.0.0.1");
+        assertThat(RateLimitFilter.client("Basic !!!", "10.0.0.1")).isEqualTo("10.0.0.1");
+        assertThat(RateLimitFilter.group("GET", "/notes/99")).isEqualTo(RateLimiter.Group.READS);
+        assertThat(RateLimitFilter.group("DELETE", "/notes/99")).isEqualTo(RateLimiter.Group.WRITES);
+        assertThat(RateLimitFilter.group("POST", "/login")).isEqualTo(RateLimiter.Group.LOGIN);
+        assertThat(RateLimitFilter.group("GET", "/actuator/health")).isNull();
+    }
+}
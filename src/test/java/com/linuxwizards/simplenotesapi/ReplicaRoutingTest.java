@@ -0,0 +1,137 @@
+package com.linuxwizards.simplenotesapi;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+
+import javax.sql.DataSource;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DirtiesContext
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = {
+                "notes.replica.enabled=true",
+                "notes.replica.url=jdbc:h2:mem:replica-${random.uuid};DB_CLOSE_DELAY=-1",
+                // Synced by the tests themselves
+                "notes.replica.sync-interval=PT1H"
+        })
+class ReplicaRoutingTest {
+    @Autowired
+    TestRestTemplate restTemplate;
+
+    @Autowired
+    NoteReplicator noteReplicator;
+
+    @Autowired
+    @Qualifier("replicaDataSource")
+    DataSource replicaDataSource;
+
+    @Test
+    void readsShouldBeServedByTheReplica() {
+        noteReplicator.sync();
+        JdbcTemplate replica = new JdbcTemplate(replicaDataSource);
+        assertThat(replica.queryForObject("SELECT title FROM note WHERE id = 102", String.class))
+                .isEqualTo("Kumar's title");
+
+        // Only the replica has this title, so seeing it proves where the read went
+        replica.update("UPDATE note SET title = 'Read from the replica' WHERE id = 102");
+
+        ResponseEntity<Note> response = restTemplate
+                .withBasicAuth("kumar2", "xyz789")
+                .getForEntity("/notes/102", Note.class);
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(response.getBody().title()).isEqualTo("Read from the replica");
+    }
+
+    @Test
+    void anOwnerShouldReadTheirOwnWritesBeforeTheReplicaCatchesUp() {
+        noteReplicator.sync();
+        Note update = new Note(null, "Written to the primary", "Not replicated yet", null);
+        ResponseEntity<Void> put = restTemplate
+                .withBasicAuth("sarah1", "abc123")
+                .exchange("/notes/100", HttpMethod.PUT, new HttpEntity<>(update), Void.class);
+        assertThat(put.getStatusCode()).isEqualTo(HttpStatus.NO_CONTENT);
+
+        ResponseEntity<Note> response = restTemplate
+                .withBasicAuth("sarah1", "abc123")
+                .getForEntity("/notes/100", Note.class);
+
+        assertThat(response.getBody().title()).isEqualTo("Written to the primary");
+        JdbcTemplate replica = new JdbcTemplate(replicaDataSource);
+        assertThat(replica.queryForObject("SELECT title FROM note WHERE id = 100", String.class))
+                .isNotEqualTo("Written to the primary");
+
+        noteReplicator.sync();
+        assertThat(replica.queryForObject("SELECT title FROM note WHERE id = 100", String.class))
+                .isEqualTo("Written to the primary");
+    }
+
+    @Test
+    void deletesShouldBeReplicated() {
+        ResponseEntity<Void> delete = restTemplate
+                .withBasicAuth("sarah1", "abc123")
+                .exchange("/notes/101", HttpMethod.DELETE, null, Void.class);
+        assertThat(delete.getStatusCode()).isEqualTo(HttpStatus.NO_CONTENT);
+
+        noteReplicator.sync();
+
+        JdbcTemplate replica = new JdbcTemplate(replicaDataSource);
+        assertThat(replica.queryForObject("SELECT COUNT(*) FROM note WHERE id = 101", Integer.class)).isZero();
+    }
+
+    @Test
+    void stickinessShouldEndAfterTheWindow() {
+        MutableClock clock = new MutableClock();
+        ReplicaStickiness stickiness = new ReplicaStickiness(Duration.ofSeconds(5), clock);
+
+        stickiness.onNoteChanged(NoteChangedEvent.deleted(1L, "sarah1"));
+
+        clock.advance(Duration.ofSeconds(4));
+        stickiness.removeExpired();
+        assertThat(stickiness.isSticky("sarah1")).isTrue();
+        assertThat(stickiness.size()).isEqualTo(1);
+
+        clock.advance(Duration.ofSeconds(1));
+        assertThat(stickiness.isSticky("sarah1")).isFalse();
+        stickiness.removeExpired();
+        assertThat(stickiness.size()).isZero();
+    }
+
+    private static class MutableClock extends Clock {
+        private Instant now = Instant.parse("2024-01-01T00:00:00Z");
+
+        void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}
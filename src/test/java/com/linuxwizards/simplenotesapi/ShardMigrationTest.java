@@ -0,0 +1,93 @@
+package com.linuxwizards.simplenotesapi;
+
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.annotation.DirtiesContext;
+
+import javax.sql.DataSource;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Enables sharding over a database that was used without it, so its ids and sequence numbers were
+ * generated one by one and already cover other shards' residue classes.
+ */
+@DirtiesContext
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = {
+                "notes.sharding.enabled=true",
+                "notes.sharding.urls[0]=" + ShardMigrationTest.unshardedUrl,
+                "notes.sharding.urls[1]=jdbc:h2:mem:shard1-${random.uuid};DB_CLOSE_DELAY=-1",
+                "notes.sharding.urls[2]=jdbc:h2:mem:shard2-${random.uuid};DB_CLOSE_DELAY=-1"
+        })
+class ShardMigrationTest {
+    static final String unshardedUrl = "jdbc:h2:mem:unsharded;DB_CLOSE_DELAY=-1";
+    // Below the fixtures' fixed ids, which afterMigrate inserts once the application starts
+    private static final int existingNotes = 98;
+
+    @Autowired
+    TestRestTemplate restTemplate;
+
+    @Autowired
+    ShardRouter shardRouter;
+
+    @BeforeAll
+    static void createUnshardedDatabase() {
+        DataSource dataSource = new DriverManagerDataSource(unshardedUrl, "sa", "");
+        Flyway.configure()
+                .dataSource(dataSource)
+                .locations("classpath:db/migration")
+                .load()
+                .migrate();
+        List<Object[]> rows = new ArrayList<>();
+        for (int i = 0; i < existingNotes; i++) {
+            rows.add(new Object[]{"Old " + i, "Written before sharding", "kumar2"});
+        }
+        new JdbcTemplate(dataSource).batchUpdate("INSERT INTO note (title, content, owner) VALUES (?, ?, ?)", rows);
+    }
+
+    @Test
+    void movingAnOwnerShouldNeverOverwriteNotesWrittenOnTheTarget() {
+        int target = 1;
+        ResponseEntity<Void> moveSarah = restTemplate
+                .withBasicAuth("notes-admin", "adm789")
+                .postForEntity("/admin/shards/sarah1/move?shard=" + target, null, Void.class);
+        assertThat(moveSarah.getStatusCode()).isEqualTo(HttpStatus.NO_CONTENT);
+
+        // Generated on the target, whose own rows say nothing about the ids used on the first shard
+        ResponseEntity<Void> created = restTemplate
+                .withBasicAuth("sarah1", "abc123")
+                .postForEntity("/notes", new Note(null, "New", "Written on the target", null), Void.class);
+        assertThat(created.getStatusCode()).isEqualTo(HttpStatus.CREATED);
+        URI location = created.getHeaders().getLocation();
+        long id = Long.parseLong(location.getPath().substring(location.getPath().lastIndexOf('/') + 1));
+        assertThat(id).isGreaterThan(102);
+
+        ResponseEntity<Void> moveKumar = restTemplate
+                .withBasicAuth("notes-admin", "adm789")
+                .postForEntity("/admin/shards/kumar2/move?shard=" + target, null, Void.class);
+        assertThat(moveKumar.getStatusCode()).isEqualTo(HttpStatus.NO_CONTENT);
+
+        JdbcTemplate targetShard = new JdbcTemplate(shardRouter.dataSource(target));
+        assertThat(targetShard.queryForObject("SELECT COUNT(*) FROM note WHERE owner = 'sarah1'", Integer.class))
+                .isEqualTo(4);
+        assertThat(targetShard.queryForObject("SELECT COUNT(*) FROM note WHERE owner = 'kumar2'", Integer.class))
+                .isEqualTo(existingNotes + 1);
+        ResponseEntity<Note> response = restTemplate
+                .withBasicAuth("sarah1", "abc123")
+                .getForEntity(location, Note.class);
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(response.getBody().title()).isEqualTo("New");
+    }
+}
@@ -0,0 +1,117 @@
+package com.linuxwizards.simplenotesapi;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+
+import java.net.URI;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DirtiesContext
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = {
+                "notes.sharding.enabled=true",
+                "notes.sharding.urls[0]=jdbc:h2:mem:shard0-${random.uuid};DB_CLOSE_DELAY=-1",
+                "notes.sharding.urls[1]=jdbc:h2:mem:shard1-${random.uuid};DB_CLOSE_DELAY=-1",
+                "notes.sharding.urls[2]=jdbc:h2:mem:shard2-${random.uuid};DB_CLOSE_DELAY=-1"
+        })
+class ShardingTest {
+    private static final int maxShards = 64;
+
+    @Autowired
+    TestRestTemplate restTemplate;
+
+    @Autowired
+    ShardRouter shardRouter;
+
+    @Test
+    void newNotesShouldBeWrittenToTheOwnersShard() {
+        ResponseEntity<Void> created = restTemplate
+                .withBasicAuth("kumar2", "xyz789")
+                .postForEntity("/notes", new Note(null, "Sharded", "On kumar's shard", null), Void.class);
+        assertThat(created.getStatusCode()).isEqualTo(HttpStatus.CREATED);
+
+        URI location = created.getHeaders().getLocation();
+        long id = Long.parseLong(location.getPath().substring(location.getPath().lastIndexOf('/') + 1));
+        int shard = shardRouter.shardFor("kumar2");
+        assertThat(id % maxShards).isEqualTo(shard);
+        assertThat(countNotes(shard, "id = " + id)).isEqualTo(1);
+
+        ResponseEntity<Note> response = restTemplate
+                .withBasicAuth("kumar2", "xyz789")
+                .getForEntity(location, Note.class);
+        assertThat(response.getBody().title()).isEqualTo("Sharded");
+    }
+
+    @Test
+    void ownersShouldBeMovableWhileKeepingTheirNotesAndSyncPosition() {
+        long highWaterMark = restTemplate
+                .withBasicAuth("sarah1", "abc123")
+                .getForObject("/notes/changes", NoteChanges.class)
+                .highWaterMark();
+        int source = shardRouter.shardFor("sarah1");
+        int target = (source + 1) % shardRouter.shardCount();
+
+        ResponseEntity<Void> move = restTemplate
+                .withBasicAuth("notes-admin", "adm789")
+                .postForEntity("/admin/shards/sarah1/move?shard=" + target, null, Void.class);
+
+        assertThat(move.getStatusCode()).isEqualTo(HttpStatus.NO_CONTENT);
+        assertThat(shardRouter.shardFor("sarah1")).isEqualTo(target);
+        assertThat(countNotes(source, "owner = 'sarah1'")).isZero();
+        assertThat(countNotes(target, "owner = 'sarah1'")).isEqualTo(3);
+
+        ResponseEntity<Void> put = restTemplate
+                .withBasicAuth("sarah1", "abc123")
+                .exchange("/notes/99", HttpMethod.PUT,
+                        new HttpEntity<>(new Note(null, "Moved", "Edited after the move", null)), Void.class);
+        assertThat(put.getStatusCode()).isEqualTo(HttpStatus.NO_CONTENT);
+
+        // Positions from before the move still work, and changes made after it come after them
+        NoteChanges changes = restTemplate
+                .withBasicAuth("sarah1", "abc123")
+                .getForObject("/notes/changes?since=" + highWaterMark, NoteChanges.class);
+        assertThat(changes.notes()).extracting(Note::title).containsExactly("Moved");
+        assertThat(changes.highWaterMark()).isGreaterThan(highWaterMark);
+    }
+
+    @Test
+    void rebalancingShouldPutEveryOwnerOnTheirRingShard() {
+        ResponseEntity<String> rebalance = restTemplate
+                .withBasicAuth("notes-admin", "adm789")
+                .postForEntity("/admin/shards/rebalance", null, String.class);
+
+        assertThat(rebalance.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(shardRouter.pinned()).isEmpty();
+        for (String owner : new String[]{"sarah1", "kumar2"}) {
+            int shard = shardRouter.ringShardFor(owner);
+            assertThat(countNotes(shard, "owner = '" + owner + "'")).isPositive();
+        }
+        ResponseEntity<Note> response = restTemplate
+                .withBasicAuth("kumar2", "xyz789")
+                .getForEntity("/notes/102", Note.class);
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+    }
+
+    @Test
+    void onlyAdminsShouldMoveOwners() {
+        ResponseEntity<Void> move = restTemplate
+                .withBasicAuth("sarah1", "abc123")
+                .postForEntity("/admin/shards/kumar2/move?shard=0", null, Void.class);
+
+        assertThat(move.getStatusCode()).isEqualTo(HttpStatus.FORBIDDEN);
+    }
+
+    private int countNotes(int shard, String condition) {
+        return new JdbcTemplate(shardRouter.dataSource(shard))
+                .queryForObject("SELECT COUNT(*) FROM note WHERE " + condition, Integer.class);
+    }
+}
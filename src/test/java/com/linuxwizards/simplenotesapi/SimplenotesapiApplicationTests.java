@@ -8,12 +8,22 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.web.client.TestRestTemplate;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.test.annotation.DirtiesContext;
 import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpRange;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
 import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
@@ -155,6 +165,252 @@ class SimplenotesapiApplicationTests {
 		assertThat(contents).containsExactly("Another note", "Second note", "This is a note");
 	}
 
+	@Test
+	void shouldWalkNotesWithACursor() {
+		ResponseEntity<String> response = restTemplate
+				.withBasicAuth("sarah1", "abc123")
+				.getForEntity("/notes?limit=2", String.class);
+		assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+
+		JSONArray ids = JsonPath.parse(response.getBody()).read("$..id");
+		assertThat(ids).containsExactly(101, 100);
+
+		String cursor = response.getHeaders().getFirst("Next-Cursor");
+		assertThat(cursor).isNotBlank();
+
+		response = restTemplate
+				.withBasicAuth("sarah1", "abc123")
+				.getForEntity("/notes?limit=2&after=" + cursor, String.class);
+		assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+
+		ids = JsonPath.parse(response.getBody()).read("$..id");
+		assertThat(ids).containsExactly(99);
+		assertThat(response.getHeaders().containsKey("Next-Cursor")).isFalse();
+	}
+
+	@Test
+	void shouldRejectAMalformedCursor() {
+		ResponseEntity<String> response = restTemplate
+				.withBasicAuth("sarah1", "abc123")
+				.getForEntity("/notes?after=not-a-cursor", String.class);
+		assertThat(response.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+
+		response = restTemplate
+				.withBasicAuth("sarah1", "abc123")
+				.getForEntity("/notes?limit=0", String.class);
+		assertThat(response.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+	}
+
+	@Test
+	@DirtiesContext
+	void shouldSyncOnlyTheChangesSinceTheLastSync() {
+		ResponseEntity<String> response = restTemplate
+				.withBasicAuth("sarah1", "abc123")
+				.getForEntity("/notes/changes", String.class);
+		assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+
+		DocumentContext documentContext = JsonPath.parse(response.getBody());
+		JSONArray ids = documentContext.read("$.notes[*].id");
+		assertThat(ids).containsExactlyInAnyOrder(99, 100, 101);
+		Number highWaterMark = documentContext.read("$.highWaterMark");
+
+		// Already in sync
+		response = restTemplate
+				.withBasicAuth("sarah1", "abc123")
+				.getForEntity("/notes/changes?since=" + highWaterMark, String.class);
+		documentContext = JsonPath.parse(response.getBody());
+		assertThat((JSONArray) documentContext.read("$.notes")).isEmpty();
+		assertThat((JSONArray) documentContext.read("$.deleted")).isEmpty();
+		assertThat(documentContext.read("$.highWaterMark", Number.class)).isEqualTo(highWaterMark);
+
+		HttpEntity<Note> request = new HttpEntity<>(new Note(null, "Synced title", "Synced content", null));
+		restTemplate
+				.withBasicAuth("sarah1", "abc123")
+				.exchange("/notes/99", HttpMethod.PUT, request, Void.class);
+		restTemplate
+				.withBasicAuth("sarah1", "abc123")
+				.exchange("/notes/100", HttpMethod.DELETE, null, Void.class);
+		restTemplate
+				.withBasicAuth("kumar2", "xyz789")
+				.exchange("/notes/102", HttpMethod.DELETE, null, Void.class);
+
+		response = restTemplate
+				.withBasicAuth("sarah1", "abc123")
+				.getForEntity("/notes/changes?since=" + highWaterMark, String.class);
+		documentContext = JsonPath.parse(response.getBody());
+		ids = documentContext.read("$.notes[*].id");
+		assertThat(ids).containsExactly(99);
+		JSONArray titles = documentContext.read("$.notes[*].title");
+		assertThat(titles).containsExactly("Synced title");
+		JSONArray deleted = documentContext.read("$.deleted");
+		assertThat(deleted).containsExactly(100);
+		assertThat(documentContext.read("$.highWaterMark", Number.class).longValue())
+				.isGreaterThan(highWaterMark.longValue());
+		Boolean hasMore = documentContext.read("$.hasMore");
+		assertThat(hasMore).isFalse();
+	}
+
+	@Test
+	void shouldSyncChangesInPages() {
+		ResponseEntity<String> response = restTemplate
+				.withBasicAuth("sarah1", "abc123")
+				.getForEntity("/notes/changes?limit=2", String.class);
+		DocumentContext documentContext = JsonPath.parse(response.getBody());
+		JSONArray ids = documentContext.read("$.notes[*].id");
+		assertThat(ids).hasSize(2);
+		Boolean hasMore = documentContext.read("$.hasMore");
+		assertThat(hasMore).isTrue();
+
+		Number highWaterMark = documentContext.read("$.highWaterMark");
+		response = restTemplate
+				.withBasicAuth("sarah1", "abc123")
+				.getForEntity("/notes/changes?limit=2&since=" + highWaterMark, String.class);
+		documentContext = JsonPath.parse(response.getBody());
+		ids = documentContext.read("$.notes[*].id");
+		assertThat(ids).hasSize(1);
+		hasMore = documentContext.read("$.hasMore");
+		assertThat(hasMore).isFalse();
+
+		response = restTemplate
+				.withBasicAuth("sarah1", "abc123")
+				.getForEntity("/notes/changes?since=-1", String.class);
+		assertThat(response.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+	}
+
+	@Test
+	void shouldExportAllNotesOfTheOwnerAsNdjson() {
+		ResponseEntity<String> response = restTemplate
+				.withBasicAuth("sarah1", "abc123")
+				.getForEntity("/notes/export", String.class);
+		assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+		assertThat(response.getHeaders().getContentType()).isEqualTo(MediaType.APPLICATION_NDJSON);
+
+		String[] lines = response.getBody().split("\n");
+		assertThat(lines).hasSize(3);
+		Number id = JsonPath.parse(lines[0]).read("$.id");
+		assertThat(id).isEqualTo(101);
+		String owner = JsonPath.parse(lines[2]).read("$.owner");
+		assertThat(owner).isEqualTo("sarah1");
+	}
+
+	@Test
+	@DirtiesContext
+	void shouldStoreLargeNotesApartAndStreamTheirContent() throws IOException {
+		String content = "Ünïcode line of a long document\n".repeat(50_000);
+		byte[] bytes = content.getBytes(StandardCharsets.UTF_8);
+		ResponseEntity<Void> createResponse = restTemplate
+				.withBasicAuth("sarah1", "abc123")
+				.postForEntity("/notes", new Note(null, "Long", content, null), Void.class);
+		assertThat(createResponse.getStatusCode()).isEqualTo(HttpStatus.CREATED);
+		URI location = createResponse.getHeaders().getLocation();
+
+		// Lists and single notes carry a preview and the full length
+		ResponseEntity<String> response = restTemplate
+				.withBasicAuth("sarah1", "abc123")
+				.getForEntity("/notes?limit=1", String.class);
+		DocumentContext documentContext = JsonPath.parse(response.getBody());
+		String preview = documentContext.read("$[0].content");
+		assertThat(content).startsWith(preview);
+		assertThat(preview.length()).isLessThan(1000);
+		Number contentLength = documentContext.read("$[0].contentLength");
+		assertThat(contentLength.longValue()).isEqualTo(bytes.length);
+
+		ResponseEntity<byte[]> contentResponse = restTemplate
+				.withBasicAuth("sarah1", "abc123")
+				.getForEntity(location + "/content", byte[].class);
+		assertThat(contentResponse.getStatusCode()).isEqualTo(HttpStatus.OK);
+		assertThat(contentResponse.getHeaders().getContentType().isCompatibleWith(MediaType.TEXT_PLAIN)).isTrue();
+		assertThat(contentResponse.getBody()).isEqualTo(bytes);
+
+		HttpHeaders headers = new HttpHeaders();
+		headers.setRange(List.of(HttpRange.createByteRange(1_000_000, 1_000_099)));
+		contentResponse = restTemplate
+				.withBasicAuth("sarah1", "abc123")
+				.exchange(location + "/content", HttpMethod.GET, new HttpEntity<>(headers), byte[].class);
+		assertThat(contentResponse.getStatusCode()).isEqualTo(HttpStatus.PARTIAL_CONTENT);
+		assertThat(contentResponse.getBody()).isEqualTo(Arrays.copyOfRange(bytes, 1_000_000, 1_000_100));
+
+		headers = new HttpHeaders();
+		headers.set(HttpHeaders.ACCEPT_ENCODING, "gzip");
+		contentResponse = restTemplate
+				.withBasicAuth("sarah1", "abc123")
+				.exchange(location + "/content", HttpMethod.GET, new HttpEntity<>(headers), byte[].class);
+		assertThat(contentResponse.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING)).isEqualTo("gzip");
+		assertThat(contentResponse.getBody().length).isLessThan(bytes.length / 10);
+		try (GZIPInputStream gzip = new GZIPInputStream(new ByteArrayInputStream(contentResponse.getBody()))) {
+			assertThat(gzip.readAllBytes()).isEqualTo(bytes);
+		}
+
+		// The compressed body has its own tag, so it can't be resumed with ranges of the plain bytes
+		String gzipETag = contentResponse.getHeaders().getETag();
+		assertThat(gzipETag).isNotEqualTo(restTemplate
+				.withBasicAuth("sarah1", "abc123")
+				.getForEntity(location + "/content", byte[].class)
+				.getHeaders().getETag());
+		headers = new HttpHeaders();
+		headers.setRange(List.of(HttpRange.createByteRange(0, 99)));
+		headers.set(HttpHeaders.IF_RANGE, gzipETag);
+		contentResponse = restTemplate
+				.withBasicAuth("sarah1", "abc123")
+				.exchange(location + "/content", HttpMethod.GET, new HttpEntity<>(headers), byte[].class);
+		assertThat(contentResponse.getStatusCode()).isEqualTo(HttpStatus.OK);
+		assertThat(contentResponse.getBody()).isEqualTo(bytes);
+
+		// Shrinking it back stores it inline again
+		restTemplate
+				.withBasicAuth("sarah1", "abc123")
+				.put(location, new Note(null, "Short", "Short again", null));
+		response = restTemplate
+				.withBasicAuth("sarah1", "abc123")
+				.getForEntity(location, String.class);
+		documentContext = JsonPath.parse(response.getBody());
+		assertThat(documentContext.read("$.content", String.class)).isEqualTo("Short again");
+		assertThat(documentContext.read("$", Map.class)).doesNotContainKey("contentLength");
+		contentResponse = restTemplate
+				.withBasicAuth("sarah1", "abc123")
+				.getForEntity(location + "/content", byte[].class);
+		assertThat(new String(contentResponse.getBody(), StandardCharsets.UTF_8)).isEqualTo("Short again");
+	}
+
+	@Test
+	void shouldNotStreamTheContentOfNotesTheyDoNotOwn() {
+		ResponseEntity<String> response = restTemplate
+				.withBasicAuth("sarah1", "abc123")
+				.getForEntity("/notes/102/content", String.class);
+		assertThat(response.getStatusCode()).isEqualTo(HttpStatus.NOT_FOUND);
+	}
+
+	@Test
+	@DirtiesContext
+	void shouldSearchTheOwnersNotesAndFollowWrites() {
+		ResponseEntity<String> response = restTemplate
+				.withBasicAuth("sarah1", "abc123")
+				.getForEntity("/notes/search?q=anoth", String.class);
+		assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+		JSONArray ids = JsonPath.parse(response.getBody()).read("$..id");
+		assertThat(ids).containsExactly(101);
+
+		response = restTemplate
+				.withBasicAuth("sarah1", "abc123")
+				.getForEntity("/notes/search?q=kumar", String.class);
+		ids = JsonPath.parse(response.getBody()).read("$..id");
+		assertThat(ids).isEmpty();
+
+		Note newNote = new Note(null, "Grocery run", "Another note about apples", null);
+		restTemplate
+				.withBasicAuth("sarah1", "abc123")
+				.postForEntity("/notes", newNote, Void.class);
+		restTemplate
+				.withBasicAuth("sarah1", "abc123")
+				.exchange("/notes/101", HttpMethod.DELETE, null, Void.class);
+
+		response = restTemplate
+				.withBasicAuth("sarah1", "abc123")
+				.getForEntity("/notes/search?q=another", String.class);
+		JSONArray titles = JsonPath.parse(response.getBody()).read("$..title");
+		assertThat(titles).containsExactly("Grocery run");
+	}
+
 	@Test
 	void shouldNotReturnANoteWhenUsingBadCredentials() {
 		ResponseEntity<String> response = restTemplate
@@ -214,6 +470,151 @@ class SimplenotesapiApplicationTests {
 		assertThat(content).isEqualTo("Updated content");
 	}
 
+	@Test
+	@DirtiesContext
+	void cachedReadsShouldNeverBeStaleOrCrossOwners() {
+		// Populate the cache for sarah1
+		restTemplate.withBasicAuth("sarah1", "abc123").getForEntity("/notes/99", String.class);
+		restTemplate.withBasicAuth("sarah1", "abc123").getForEntity("/notes", String.class);
+
+		ResponseEntity<String> response = restTemplate
+				.withBasicAuth("kumar2", "xyz789")
+				.getForEntity("/notes/99", String.class);
+		assertThat(response.getStatusCode()).isEqualTo(HttpStatus.NOT_FOUND);
+		response = restTemplate
+				.withBasicAuth("kumar2", "xyz789")
+				.getForEntity("/notes", String.class);
+		JSONArray ids = JsonPath.parse(response.getBody()).read("$..id");
+		assertThat(ids).containsExactly(102);
+
+		HttpEntity<Note> request = new HttpEntity<>(new Note(null, "Fresh title", "Fresh content", null));
+		restTemplate
+				.withBasicAuth("sarah1", "abc123")
+				.exchange("/notes/99", HttpMethod.PUT, request, Void.class);
+		restTemplate
+				.withBasicAuth("sarah1", "abc123")
+				.exchange("/notes/100", HttpMethod.DELETE, null, Void.class);
+
+		response = restTemplate
+				.withBasicAuth("sarah1", "abc123")
+				.getForEntity("/notes/99", String.class);
+		String title = JsonPath.parse(response.getBody()).read("$.title");
+		assertThat(title).isEqualTo("Fresh title");
+
+		response = restTemplate
+				.withBasicAuth("sarah1", "abc123")
+				.getForEntity("/notes", String.class);
+		ids = JsonPath.parse(response.getBody()).read("$..id");
+		assertThat(ids).containsExactly(101, 99);
+		JSONArray titles = JsonPath.parse(response.getBody()).read("$..title");
+		assertThat(titles).contains("Fresh title");
+	}
+
+	@Test
+	@DirtiesContext
+	void shouldAnswerConditionalReadsWithNotModifiedUntilTheNotesChange() {
+		ResponseEntity<String> response = restTemplate
+				.withBasicAuth("sarah1", "abc123")
+				.getForEntity("/notes/99", String.class);
+		String noteETag = response.getHeaders().getETag();
+		assertThat(noteETag).isNotNull();
+		assertThat(response.getBody()).doesNotContain("version");
+
+		response = restTemplate
+				.withBasicAuth("sarah1", "abc123")
+				.getForEntity("/notes", String.class);
+		String listETag = response.getHeaders().getETag();
+		assertThat(listETag).isNotNull();
+
+		HttpHeaders headers = new HttpHeaders();
+		headers.setIfNoneMatch(noteETag);
+		response = restTemplate
+				.withBasicAuth("sarah1", "abc123")
+				.exchange("/notes/99", HttpMethod.GET, new HttpEntity<>(headers), String.class);
+		assertThat(response.getStatusCode()).isEqualTo(HttpStatus.NOT_MODIFIED);
+		assertThat(response.getBody()).isNull();
+
+		headers = new HttpHeaders();
+		headers.setIfNoneMatch(listETag);
+		response = restTemplate
+				.withBasicAuth("sarah1", "abc123")
+				.exchange("/notes", HttpMethod.GET, new HttpEntity<>(headers), String.class);
+		assertThat(response.getStatusCode()).isEqualTo(HttpStatus.NOT_MODIFIED);
+
+		// Another owner's list tag is never shared
+		response = restTemplate
+				.withBasicAuth("kumar2", "xyz789")
+				.exchange("/notes", HttpMethod.GET, new HttpEntity<>(headers), String.class);
+		assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+
+		HttpEntity<Note> request = new HttpEntity<>(new Note(null, "Changed title", "Changed content", null));
+		restTemplate
+				.withBasicAuth("sarah1", "abc123")
+				.exchange("/notes/99", HttpMethod.PUT, request, Void.class);
+
+		response = restTemplate
+				.withBasicAuth("sarah1", "abc123")
+				.exchange("/notes", HttpMethod.GET, new HttpEntity<>(headers), String.class);
+		assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+		assertThat(response.getHeaders().getETag()).isNotEqualTo(listETag);
+
+		headers = new HttpHeaders();
+		headers.setIfNoneMatch(noteETag);
+		response = restTemplate
+				.withBasicAuth("sarah1", "abc123")
+				.exchange("/notes/99", HttpMethod.GET, new HttpEntity<>(headers), String.class);
+		assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+		assertThat(response.getHeaders().getETag()).isNotEqualTo(noteETag);
+	}
+
+	@Test
+	@DirtiesContext
+	void shouldOnlyApplyConditionalWritesToTheVersionTheClientHasSeen() {
+		String eTag = restTemplate
+				.withBasicAuth("sarah1", "abc123")
+				.getForEntity("/notes/99", String.class)
+				.getHeaders().getETag();
+
+		HttpHeaders headers = new HttpHeaders();
+		headers.setIfMatch(eTag);
+		HttpEntity<Note> request = new HttpEntity<>(new Note(null, "First writer", "First content", null), headers);
+		ResponseEntity<Void> response = restTemplate
+				.withBasicAuth("sarah1", "abc123")
+				.exchange("/notes/99", HttpMethod.PUT, request, Void.class);
+		assertThat(response.getStatusCode()).isEqualTo(HttpStatus.NO_CONTENT);
+
+		// A second writer holding the same, now outdated, tag loses
+		request = new HttpEntity<>(new Note(null, "Second writer", "Second content", null), headers);
+		response = restTemplate
+				.withBasicAuth("sarah1", "abc123")
+				.exchange("/notes/99", HttpMethod.PUT, request, Void.class);
+		assertThat(response.getStatusCode()).isEqualTo(HttpStatus.PRECONDITION_FAILED);
+
+		response = restTemplate
+				.withBasicAuth("sarah1", "abc123")
+				.exchange("/notes/99", HttpMethod.DELETE, new HttpEntity<>(headers), Void.class);
+		assertThat(response.getStatusCode()).isEqualTo(HttpStatus.PRECONDITION_FAILED);
+
+		ResponseEntity<String> getResponse = restTemplate
+				.withBasicAuth("sarah1", "abc123")
+				.getForEntity("/notes/99", String.class);
+		String title = JsonPath.parse(getResponse.getBody()).read("$.title");
+		assertThat(title).isEqualTo("First writer");
+
+		headers = new HttpHeaders();
+		headers.setIfMatch(getResponse.getHeaders().getETag());
+		response = restTemplate
+				.withBasicAuth("sarah1", "abc123")
+				.exchange("/notes/99", HttpMethod.DELETE, new HttpEntity<>(headers), Void.class);
+		assertThat(response.getStatusCode()).isEqualTo(HttpStatus.NO_CONTENT);
+
+		// A missing note stays a 404, even with a tag
+		response = restTemplate
+				.withBasicAuth("sarah1", "abc123")
+				.exchange("/notes/99", HttpMethod.DELETE, new HttpEntity<>(headers), Void.class);
+		assertThat(response.getStatusCode()).isEqualTo(HttpStatus.NOT_FOUND);
+	}
+
 	@Test
 	void shouldNotUpdateANoteThatDoesNotExist() {
 		Note unknownNote = new Note(null, "Random title", "Random content", null);
@@ -271,6 +672,56 @@ class SimplenotesapiApplicationTests {
 		assertThat(getResponse.getStatusCode()).isEqualTo(HttpStatus.OK);
 	}
 
+	@Test
+	@DirtiesContext
+	void shouldApplyABatchOfOperationsWithAResultPerItem() {
+		String batch = """
+				[
+				   { "op": "create", "title": "Batch title", "content": "Batch content" },
+				   { "op": "update", "id": 99, "title": "Updated in batch", "content": "Updated content" },
+				   { "op": "update", "id": 102, "title": "Not mine", "content": "Not mine" },
+				   { "op": "create", "title": "This title is far too long to be accepted", "content": "x" },
+				   { "op": "delete", "id": 100 },
+				   { "op": "delete", "id": 99999 }
+				]
+				""";
+		HttpHeaders headers = new HttpHeaders();
+		headers.setContentType(MediaType.APPLICATION_JSON);
+		ResponseEntity<String> response = restTemplate
+				.withBasicAuth("sarah1", "abc123")
+				.exchange("/notes/batch", HttpMethod.POST, new HttpEntity<>(batch, headers), String.class);
+		assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+
+		DocumentContext documentContext = JsonPath.parse(response.getBody());
+		JSONArray statuses = documentContext.read("$[*].status");
+		assertThat(statuses).containsExactly(201, 204, 404, 400, 204, 404);
+
+		String location = documentContext.read("$[0].location");
+		ResponseEntity<String> getResponse = restTemplate
+				.withBasicAuth("sarah1", "abc123")
+				.getForEntity(location, String.class);
+		assertThat(getResponse.getStatusCode()).isEqualTo(HttpStatus.OK);
+		String title = JsonPath.parse(getResponse.getBody()).read("$.title");
+		assertThat(title).isEqualTo("Batch title");
+
+		getResponse = restTemplate
+				.withBasicAuth("sarah1", "abc123")
+				.getForEntity("/notes/99", String.class);
+		title = JsonPath.parse(getResponse.getBody()).read("$.title");
+		assertThat(title).isEqualTo("Updated in batch");
+
+		getResponse = restTemplate
+				.withBasicAuth("sarah1", "abc123")
+				.getForEntity("/notes/100", String.class);
+		assertThat(getResponse.getStatusCode()).isEqualTo(HttpStatus.NOT_FOUND);
+
+		getResponse = restTemplate
+				.withBasicAuth("kumar2", "xyz789")
+				.getForEntity("/notes/102", String.class);
+		title = JsonPath.parse(getResponse.getBody()).read("$.title");
+		assertThat(title).isEqualTo("Kumar's title");
+	}
+
 	@Test
 	void loginEndpointShouldReturnOkForAuthenticatedUser() {
 		ResponseEntity<Void> response = restTemplate
@@ -301,4 +752,116 @@ class SimplenotesapiApplicationTests {
 				.getForEntity("/login", Void.class);
 		assertThat(response.getStatusCode()).isEqualTo(HttpStatus.UNAUTHORIZED);
 	}
+
+	@Test
+	void loginShouldIssueAnAccessTokenThatAuthenticatesLaterRequests() {
+		ResponseEntity<String> loginResponse = restTemplate
+				.withBasicAuth("sarah1", "abc123")
+				.getForEntity("/login", String.class);
+		assertThat(loginResponse.getStatusCode()).isEqualTo(HttpStatus.OK);
+
+		DocumentContext documentContext = JsonPath.parse(loginResponse.getBody());
+		String token = documentContext.read("$.accessToken");
+		assertThat(token).isNotBlank();
+
+		ResponseEntity<String> response = restTemplate
+				.exchange("/notes/99", HttpMethod.GET, new HttpEntity<>(bearer(token)), String.class);
+		assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+
+		response = restTemplate
+				.exchange("/notes/102", HttpMethod.GET, new HttpEntity<>(bearer(token)), String.class);
+		assertThat(response.getStatusCode()).isEqualTo(HttpStatus.NOT_FOUND);
+	}
+
+	@Test
+	void shouldRejectTamperedAndRevokedAccessTokens() {
+		String token = JsonPath.parse(restTemplate
+				.withBasicAuth("sarah1", "abc123")
+				.getForEntity("/login", String.class)
+				.getBody()).read("$.accessToken");
+
+		int signatureStart = token.lastIndexOf('.') + 1;
+		char replacement = token.charAt(signatureStart) == 'A' ? 'B' : 'A';
+		String tampered = token.substring(0, signatureStart) + replacement + token.substring(signatureStart + 1);
+		ResponseEntity<String> response = restTemplate
+				.exchange("/notes/99", HttpMethod.GET, new HttpEntity<>(bearer(tampered)), String.class);
+		assertThat(response.getStatusCode()).isEqualTo(HttpStatus.UNAUTHORIZED);
+
+		ResponseEntity<Void> logoutResponse = restTemplate
+				.exchange("/login", HttpMethod.DELETE, new HttpEntity<>(bearer(token)), Void.class);
+		assertThat(logoutResponse.getStatusCode()).isEqualTo(HttpStatus.NO_CONTENT);
+
+		response = restTemplate
+				.exchange("/notes/99", HttpMethod.GET, new HttpEntity<>(bearer(token)), String.class);
+		assertThat(response.getStatusCode()).isEqualTo(HttpStatus.UNAUTHORIZED);
+	}
+
+	@Test
+	void shouldNotIssueAccessTokensToUsersWhoAreNotNotepadUsers() {
+		ResponseEntity<String> response = restTemplate
+				.withBasicAuth("hank-cant-note", "qrs456")
+				.getForEntity("/login", String.class);
+		assertThat(response.getStatusCode()).isEqualTo(HttpStatus.FORBIDDEN);
+
+		response = restTemplate
+				.exchange("/notes/99", HttpMethod.GET, new HttpEntity<>(bearer("not.a.token")), String.class);
+		assertThat(response.getStatusCode()).isEqualTo(HttpStatus.UNAUTHORIZED);
+	}
+
+	@Test
+	void shouldExposeRequestAuthAndPoolMetricsForScraping() {
+		restTemplate.withBasicAuth("sarah1", "abc123").getForEntity("/notes/99", String.class);
+		restTemplate.withBasicAuth("sarah1", "abc123").getForEntity("/notes/1000000", String.class);
+
+		ResponseEntity<String> response = restTemplate
+				.withBasicAuth("notes-admin", "adm789")
+				.getForEntity("/actuator/prometheus", String.class);
+		assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+		assertThat(response.getBody())
+				.contains("http_server_requests_seconds_bucket")
+				.containsPattern("http_server_requests_seconds_count\\{.*status=\"404\".*uri=\"/notes/\\{requestedId}\"")
+				.contains("spring_data_repository_invocations_seconds_bucket")
+				.contains("notes_auth_seconds_bucket")
+				.contains("notes_auth_password_seconds")
+				.contains("hikaricp_connections_active")
+				.contains("notes_cache_requests_total");
+	}
+
+	@Test
+	void onlyAdminsShouldBeAbleToScrapeMetrics() {
+		ResponseEntity<String> response = restTemplate.getForEntity("/actuator/prometheus", String.class);
+		assertThat(response.getStatusCode()).isEqualTo(HttpStatus.UNAUTHORIZED);
+
+		response = restTemplate.withBasicAuth("sarah1", "abc123").getForEntity("/actuator/prometheus", String.class);
+		assertThat(response.getStatusCode()).isEqualTo(HttpStatus.FORBIDDEN);
+
+		response = restTemplate.getForEntity("/actuator/health", String.class);
+		assertThat(response.getStatusCode()).isNotEqualTo(HttpStatus.UNAUTHORIZED);
+	}
+
+	@Test
+	void adminsShouldBeAbleToDumpTheDatabase() {
+		ResponseEntity<String> response = restTemplate
+				.withBasicAuth("notes-admin", "adm789")
+				.getForEntity("/admin/script", String.class);
+		assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+		assertThat(response.getBody()).contains("\"PUBLIC\".\"NOTE\"");
+
+		// The test database is in memory, so there is no file to back up
+		response = restTemplate
+				.withBasicAuth("notes-admin", "adm789")
+				.getForEntity("/admin/backup", String.class);
+		assertThat(response.getStatusCode()).isEqualTo(HttpStatus.CONFLICT);
+
+		response = restTemplate
+				.withBasicAuth("sarah1", "abc123")
+				.getForEntity("/admin/script", String.class);
+		assertThat(response.getStatusCode()).isEqualTo(HttpStatus.FORBIDDEN);
+	}
+
+	private static HttpHeaders bearer(String token) {
+		HttpHeaders headers = new HttpHeaders();
+		headers.setBearerAuth(token);
+		return headers;
+	}
 }
@@ -0,0 +1,165 @@
+package com.linuxwizards.simplenotesapi;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class SingleFlightTest {
+    private static final int requests = 16;
+
+    private final OwnerChangeCounter ownerChangeCounter = new OwnerChangeCounter();
+    private final SingleFlight singleFlight =
+            new SingleFlight(new ObjectMapper(), ownerChangeCounter, true, Duration.ofSeconds(5));
+
+    @Test
+    void concurrentIdenticalReadsShouldShareOneQueryAndOneBody() throws Exception {
+        AtomicInteger queries = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        Supplier<Note> query = () -> {
+            queries.incrementAndGet();
+            await(release);
+            return new Note(99L, "Title", "Content", "sarah1", 0L);
+        };
+
+        List<Future<SingleFlight.Result>> results = new ArrayList<>();
+        try (ExecutorService executor = Executors.newFixedThreadPool(requests)) {
+            for (int i = 0; i < requests; i++) {
+                results.add(executor.submit(() -> singleFlight.load("sarah1", "note:99", query)));
+            }
+            awaitFollowers();
+            release.countDown();
+        }
+
+        assertThat(queries).hasValue(1);
+        byte[] json = results.get(0).get().json();
+        for (Future<SingleFlight.Result> result : results) {
+            assertThat(result.get().json()).isSameAs(json);
+        }
+        assertThat(new String(json)).contains("\"title\":\"Title\"");
+    }
+
+    @Test
+    void resultsShouldOnlyBeSerializedWhenSent() {
+        AtomicInteger serializations = new AtomicInteger();
+        ObjectMapper countingMapper = new ObjectMapper() {
+            @Override
+            public byte[] writeValueAsBytes(Object value) throws JsonProcessingException {
+                serializations.incrementAndGet();
+                return super.writeValueAsBytes(value);
+            }
+        };
+        SingleFlight singleFlight = new SingleFlight(countingMapper, ownerChangeCounter, true, Duration.ofSeconds(5));
+
+        // As for a request answered with 304
+        SingleFlight.Result result = singleFlight.load("sarah1", "note:99",
+                () -> new Note(99L, "Title", "Content", "sarah1", 0L));
+        assertThat(serializations).hasValue(0);
+
+        byte[] json = result.json();
+        assertThat(result.json()).isSameAs(json);
+        assertThat(serializations).hasValue(1);
+    }
+
+    @Test
+    void ownersShouldNeverShareAFlight() {
+        // Kumar's identical request arrives while Sarah's query is still running
+        SingleFlight.Result kumars = singleFlight.load("sarah1", "note:99", () ->
+                singleFlight.load("kumar2", "note:99", () -> null));
+
+        assertThat(kumars.value()).isNotNull();
+        assertThat(((SingleFlight.Result) kumars.value()).value()).isNull();
+        assertThat(singleFlight.leaderCount()).isEqualTo(2);
+        assertThat(singleFlight.followerCount()).isZero();
+        assertThat(singleFlight.fallbackCount()).isZero();
+    }
+
+    @Test
+    void readsAfterAWriteShouldNotJoinAnEarlierFlight() {
+        singleFlight.load("sarah1", "note:99", () -> {
+            ownerChangeCounter.onNoteChanged(NoteChangedEvent.deleted(99L, "sarah1"));
+            return singleFlight.load("sarah1", "note:99", () -> null);
+        });
+
+        assertThat(singleFlight.leaderCount()).isEqualTo(2);
+        assertThat(singleFlight.followerCount()).isZero();
+        assertThat(singleFlight.fallbackCount()).isZero();
+    }
+
+    @Test
+    void followersShouldRunTheQueryThemselvesWhenTheLeaderFails() throws Exception {
+        AtomicInteger queries = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger calls = new AtomicInteger();
+        Supplier<Note> query = () -> {
+            queries.incrementAndGet();
+            if (calls.getAndIncrement() == 0) {
+                await(release);
+                throw new IllegalStateException("Leader's query was cancelled");
+            }
+            return new Note(99L, "Title", "Content", "sarah1", 0L);
+        };
+
+        List<Future<SingleFlight.Result>> results = new ArrayList<>();
+        try (ExecutorService executor = Executors.newFixedThreadPool(requests)) {
+            for (int i = 0; i < requests; i++) {
+                results.add(executor.submit(() -> singleFlight.load("sarah1", "note:99", query)));
+            }
+            awaitFollowers();
+            release.countDown();
+        }
+
+        int failed = 0;
+        for (Future<SingleFlight.Result> result : results) {
+            try {
+                assertThat(result.get().value()).isNotNull();
+            } catch (Exception e) {
+                failed++;
+            }
+        }
+        assertThat(failed).isEqualTo(1);
+        assertThat(singleFlight.fallbackCount()).isEqualTo(requests - 1);
+    }
+
+    @Test
+    void followersShouldStopWaitingAfterMaxWait() {
+        SingleFlight impatient = new SingleFlight(new ObjectMapper(), ownerChangeCounter, true, Duration.ofMillis(10));
+        AtomicInteger queries = new AtomicInteger();
+
+        impatient.load("sarah1", "note:99", () -> {
+            queries.incrementAndGet();
+            // A follower on this same thread would wait for itself, so this only returns after max-wait
+            return impatient.load("sarah1", "note:99", () -> {
+                queries.incrementAndGet();
+                return new Note(99L, "Title", "Content", "sarah1", 0L);
+            }).value();
+        });
+
+        assertThat(queries).hasValue(2);
+        assertThat(impatient.fallbackCount()).isEqualTo(1);
+    }
+
+    private static void awaitFollowers() throws InterruptedException {
+        // Gives every request time to join the flight before the leader's query returns
+        Thread.sleep(200);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.linuxwizards.simplenotesapi;
+
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import javax.sql.DataSource;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryUsage;
+import java.nio.file.Path;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Measures startup time and heap use of the persistent mode on a large existing database
+ * ({@code -Dnotes.startup.notes}, 10 million notes by default), and checks that a restart leaves the schema alone.
+ * Run with {@code ./gradlew loadTest}; seeding 10 million notes takes a few minutes.
+ */
+@Tag("load")
+class StartupLoadTest {
+    private static final int notes = Integer.getInteger("notes.startup.notes", 10_000_000);
+    private static final int owners = 10_000;
+
+    @Test
+    void restartingOnALargeDatabaseShouldNotMigrateAgain() {
+        String path = Path.of("build", "startup-load-test", UUID.randomUUID().toString()).toAbsolutePath().toString();
+        DataSource dataSource = new DriverManagerDataSource("jdbc:h2:file:" + path, "sa", "");
+        Flyway.configure().dataSource(dataSource).load().migrate();
+        long start = System.nanoTime();
+        new NoteDataGenerator(dataSource).seed(notes, owners);
+        System.out.printf("Seeded %d notes in %.1f s%n", notes, (System.nanoTime() - start) / 1e9);
+        int migrations = countMigrations(dataSource);
+
+        for (int run = 1; run <= 2; run++) {
+            start = System.nanoTime();
+            try (ConfigurableApplicationContext context = new SpringApplicationBuilder(SimplenotesapiApplication.class)
+                    // Without the test fixtures, whose fixed ids would collide with the generated notes
+                    .properties("notes.storage.path=" + path, "spring.flyway.locations=classpath:db/migration",
+                            "server.port=0", "spring.main.banner-mode=off")
+                    .run()) {
+                long startup = System.nanoTime() - start;
+                System.gc();
+                MemoryUsage heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+                long count = context.getBean(JdbcTemplate.class).queryForObject("SELECT COUNT(*) FROM note", Long.class);
+                System.out.printf("Startup %d on %d notes: %.1f s, heap used after GC %d MB%n",
+                        run, count, startup / 1e9, heap.getUsed() / (1024 * 1024));
+            }
+        }
+
+        assertThat(countMigrations(dataSource)).isEqualTo(migrations);
+    }
+
+    private static int countMigrations(DataSource dataSource) {
+        return new JdbcTemplate(dataSource)
+                .queryForObject("SELECT COUNT(*) FROM \"flyway_schema_history\"", Integer.class);
+    }
+}
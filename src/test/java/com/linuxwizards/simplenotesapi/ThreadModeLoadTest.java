@@ -0,0 +1,158 @@
+package com.linuxwizards.simplenotesapi;
+
+import com.jayway.jsonpath.JsonPath;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordingStream;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Measures throughput of 10k concurrent connections, each reading a page of notes from the database.
+ * Subclasses run it with platform and with virtual request threads; compare their output.
+ * With virtual threads, it also reports where they blocked while pinned to their carrier, recorded
+ * with JFR, and fails if any was blocked in this application's own code.
+ * Run with {@code ./gradlew loadTest}; 10k connections may need a higher open file limit ({@code ulimit -n}).
+ */
+@Tag("load")
+abstract class ThreadModeLoadTest {
+    private static final String owner = "sarah1";
+    private static final int connections = 10_000;
+    private static final int notes = 1_000;
+
+    @LocalServerPort
+    int port;
+
+    @Value("${spring.threads.virtual.enabled}")
+    boolean virtualThreads;
+
+    @Autowired
+    TestRestTemplate restTemplate;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void seed() {
+        List<Object[]> rows = new ArrayList<>();
+        for (int i = 0; i < notes; i++) {
+            rows.add(new Object[]{"Title " + i, "Content " + i, owner});
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO note (title, content, owner) VALUES (?, ?, ?)", rows);
+    }
+
+    @Test
+    void shouldServeTenThousandConcurrentConnections() throws Exception {
+        // A token keeps Argon2 out of the measurement; with single flight off in both modes, pages past
+        // the cached ones always hit the database
+        String token = JsonPath.parse(restTemplate
+                .withBasicAuth(owner, "abc123")
+                .getForEntity("/login", String.class)
+                .getBody()).read("$.accessToken");
+        HttpClient httpClient = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(30)).build();
+
+        Map<String, LongAdder> pinnedAt = new ConcurrentHashMap<>();
+        RecordingStream pinning = new RecordingStream();
+        pinning.enable("jdk.VirtualThreadPinned").withoutThreshold().withStackTrace();
+        pinning.onEvent("jdk.VirtualThreadPinned",
+                event -> pinnedAt.computeIfAbsent(blockedIn(event), key -> new LongAdder()).increment());
+        if (virtualThreads) {
+            pinning.startAsync();
+        }
+
+        long[] latencies = new long[connections];
+        int failures = 0;
+        long start;
+        try (ExecutorService clients = Executors.newVirtualThreadPerTaskExecutor()) {
+            CountDownLatch go = new CountDownLatch(1);
+            List<Future<Integer>> statuses = new ArrayList<>();
+            for (int i = 0; i < connections; i++) {
+                int request = i;
+                HttpRequest httpRequest = HttpRequest
+                        .newBuilder(URI.create("http://localhost:" + port + "/notes?size=20&page=" + (3 + i % 40)))
+                        .header("Authorization", "Bearer " + token)
+                        .timeout(Duration.ofMinutes(2))
+                        .build();
+                statuses.add(clients.submit(() -> {
+                    go.await();
+                    long requestStart = System.nanoTime();
+                    int status = httpClient.send(httpRequest, HttpResponse.BodyHandlers.discarding()).statusCode();
+                    latencies[request] = System.nanoTime() - requestStart;
+                    return status;
+                }));
+            }
+
+            start = System.nanoTime();
+            go.countDown();
+            for (Future<Integer> status : statuses) {
+                try {
+                    if (status.get() != 200) {
+                        failures++;
+                    }
+                } catch (Exception e) {
+                    failures++;
+                }
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+        if (virtualThreads) {
+            // Returns once every recorded event has been handled
+            pinning.stop();
+        }
+        pinning.close();
+
+        Arrays.sort(latencies);
+        System.out.printf("%s threads: %d connections in %.2f s, %.0f requests/s, p50 %.1f ms, p99 %.1f ms, %d failed%n",
+                virtualThreads ? "virtual" : "platform", connections, elapsed / 1e9, connections / (elapsed / 1e9),
+                latencies[connections / 2] / 1e6, latencies[connections * 99 / 100] / 1e6, failures);
+
+        if (virtualThreads) {
+            System.out.printf("Virtual threads blocked while pinned: %d times%n",
+                    pinnedAt.values().stream().mapToLong(LongAdder::sum).sum());
+            pinnedAt.forEach((frame, count) -> System.out.printf("  %6d in %s%n", count.sum(), frame));
+        }
+
+        assertThat(failures).isZero();
+        assertThat(pinnedAt.keySet()).noneMatch(frame -> frame.startsWith(getClass().getPackageName() + "."));
+    }
+
+    /**
+     * The innermost frame outside the JDK, i.e. the code that blocked while holding a monitor.
+     */
+    private static String blockedIn(RecordedEvent event) {
+        if (event.getStackTrace() == null) {
+            return "unknown";
+        }
+        for (RecordedFrame frame : event.getStackTrace().getFrames()) {
+            String type = frame.getMethod().getType().getName();
+            if (!type.startsWith("java.") && !type.startsWith("jdk.") && !type.startsWith("sun.")) {
+                return type + "." + frame.getMethod().getName();
+            }
+        }
+        return "the JDK";
+    }
+}
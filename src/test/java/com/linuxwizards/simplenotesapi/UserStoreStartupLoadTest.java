@@ -0,0 +1,96 @@
+package com.linuxwizards.simplenotesapi;
+
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.security.core.userdetails.UserDetailsService;
+
+import javax.sql.DataSource;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PipedReader;
+import java.io.PipedWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryUsage;
+import java.nio.file.Path;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Compares startup time and heap use with the test users against a database of
+ * {@code -Dnotes.startup.users} users (1 million by default), which should be about the same since
+ * users are only read when they authenticate. Run with {@code ./gradlew loadTest}.
+ */
+@Tag("load")
+class UserStoreStartupLoadTest {
+    private static final int users = Integer.getInteger("notes.startup.users", 1_000_000);
+    // Hashing a million passwords is what this avoids, so every user shares one precomputed hash
+    private static final String hash =
+            "$argon2id$v=19$m=16384,t=2,p=1$5IrjtRqWvKT9+f5ml0lbUA$CqUnvRhOXoWdIFmKdCdo/I9I7Ht2pE1673Hq9I+N2t8";
+
+    @Test
+    void startupShouldNotDependOnTheNumberOfUsers() throws Exception {
+        String withTestUsers = createDatabase(0);
+        // Warms up class loading and the JIT, which would otherwise all count against the first startup
+        startup(withTestUsers);
+        double few = startup(withTestUsers);
+        double many = startup(createDatabase(users));
+
+        System.out.printf("Startup with %d users took %.2fx as long as with the test users%n", users, many / few);
+    }
+
+    private static String createDatabase(int generatedUsers) throws Exception {
+        String path = Path.of("build", "user-startup-load-test", UUID.randomUUID().toString()).toAbsolutePath().toString();
+        DataSource dataSource = new DriverManagerDataSource("jdbc:h2:file:" + path, "sa", "");
+        // The fixtures add the test users once; the application then starts without them
+        Flyway.configure().dataSource(dataSource)
+                .locations("classpath:db/migration", "classpath:db/testdata")
+                .load()
+                .migrate();
+
+        long start = System.nanoTime();
+        PipedWriter csv = new PipedWriter();
+        BufferedReader reader = new BufferedReader(new PipedReader(csv, 1 << 16));
+        Thread writer = Thread.ofPlatform().start(() -> writeUsers(csv, generatedUsers));
+        new UserImporter(dataSource).importUsers(reader);
+        writer.join();
+        System.out.printf("Imported %d users in %.1f s%n", generatedUsers, (System.nanoTime() - start) / 1e9);
+        return path;
+    }
+
+    private static void writeUsers(Writer csv, int generatedUsers) {
+        try (csv) {
+            for (int i = 0; i < generatedUsers; i++) {
+                csv.write("user-" + i + "," + hash + ",NOTES-USER\n");
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static double startup(String path) {
+        long start = System.nanoTime();
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(SimplenotesapiApplication.class)
+                .properties("notes.storage.path=" + path, "spring.flyway.locations=classpath:db/migration",
+                        "server.port=0", "spring.main.banner-mode=off")
+                .run()) {
+            long startup = System.nanoTime() - start;
+            System.gc();
+            MemoryUsage heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+            long count = context.getBean(JdbcTemplate.class).queryForObject("SELECT COUNT(*) FROM app_user", Long.class);
+            System.out.printf("Startup on %d users: %.1f s, heap used after GC %d MB%n",
+                    count, startup / 1e9, heap.getUsed() / (1024 * 1024));
+
+            assertThat(context.getBean(UserDetailsService.class).loadUserByUsername("sarah1").getPassword())
+                    .startsWith("$argon2");
+            return startup;
+        }
+    }
+}
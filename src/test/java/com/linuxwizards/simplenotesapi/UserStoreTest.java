@@ -0,0 +1,110 @@
+package com.linuxwizards.simplenotesapi;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.data.jdbc.DataJdbcTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.security.crypto.argon2.Argon2PasswordEncoder;
+
+import javax.sql.DataSource;
+import java.io.BufferedReader;
+import java.io.StringReader;
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DataJdbcTest
+public class UserStoreTest {
+    private static final String sarahsHash =
+            "$argon2id$v=19$m=16384,t=2,p=1$5IrjtRqWvKT9+f5ml0lbUA$CqUnvRhOXoWdIFmKdCdo/I9I7Ht2pE1673Hq9I+N2t8";
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private JdbcUserDetailsService userDetailsService;
+
+    @BeforeEach
+    void setUp() {
+        userDetailsService = new JdbcUserDetailsService(jdbcTemplate, 2, Duration.ofMinutes(1));
+    }
+
+    @Test
+    void shouldLoadPreHashedPasswordsAndRoles() {
+        UserDetails admin = userDetailsService.loadUserByUsername("notes-admin");
+
+        assertThat(admin.getAuthorities()).extracting(GrantedAuthority::getAuthority)
+                .containsExactlyInAnyOrder("ROLE_NOTES-USER", "ROLE_NOTES-ADMIN");
+        assertThat(Argon2PasswordEncoder.defaultsForSpringSecurity_v5_8().matches("adm789", admin.getPassword()))
+                .isTrue();
+    }
+
+    @Test
+    void shouldServeRepeatedLookupsFromTheCacheUntilEvicted() {
+        userDetailsService.loadUserByUsername("sarah1");
+        jdbcTemplate.update("DELETE FROM app_user_role WHERE username = 'sarah1'");
+
+        assertThat(userDetailsService.loadUserByUsername("sarah1").getAuthorities()).hasSize(1);
+        assertThat(userDetailsService.hitCount()).isEqualTo(1);
+
+        userDetailsService.evict("sarah1");
+        assertThat(userDetailsService.loadUserByUsername("sarah1").getAuthorities()).isEmpty();
+    }
+
+    @Test
+    void shouldNotCacheUnknownUsersAndStayBounded() {
+        assertThatThrownBy(() -> userDetailsService.loadUserByUsername("nobody"))
+                .isInstanceOf(UsernameNotFoundException.class);
+        userDetailsService.loadUserByUsername("sarah1");
+        userDetailsService.loadUserByUsername("kumar2");
+        userDetailsService.loadUserByUsername("notes-admin");
+
+        assertThat(userDetailsService.size()).isEqualTo(2);
+    }
+
+    @Test
+    void importShouldAddAndReplaceUsers() {
+        String csv = "new-user," + sarahsHash + ",NOTES-USER\n"
+                + "\n"
+                + "kumar2," + sarahsHash + ",LOCKED-USER;NOTES-ADMIN\n";
+
+        int imported = new UserImporter(dataSource).importUsers(new BufferedReader(new StringReader(csv)));
+
+        assertThat(imported).isEqualTo(2);
+        assertThat(userDetailsService.loadUserByUsername("new-user").getPassword()).isEqualTo(sarahsHash);
+        assertThat(userDetailsService.loadUserByUsername("kumar2").getAuthorities())
+                .extracting(GrantedAuthority::getAuthority)
+                .containsExactlyInAnyOrder("ROLE_LOCKED-USER", "ROLE_NOTES-ADMIN");
+    }
+
+    @Test
+    void importShouldCountRepeatedRolesOnceAndLetLaterLinesWin() {
+        String csv = "new-user," + sarahsHash + ",NOTES-USER;NOTES-USER\n"
+                + "other-user," + sarahsHash + ",NOTES-USER\n"
+                + "new-user," + sarahsHash + ",NOTES-ADMIN;NOTES-USER;NOTES-ADMIN\n";
+
+        int imported = new UserImporter(dataSource).importUsers(new BufferedReader(new StringReader(csv)));
+
+        assertThat(imported).isEqualTo(2);
+        assertThat(userDetailsService.loadUserByUsername("new-user").getAuthorities())
+                .extracting(GrantedAuthority::getAuthority)
+                .containsExactlyInAnyOrder("ROLE_NOTES-ADMIN", "ROLE_NOTES-USER");
+        assertThat(userDetailsService.loadUserByUsername("other-user").getAuthorities()).hasSize(1);
+    }
+
+    @Test
+    void importShouldRefusePlainPasswords() {
+        String csv = "new-user," + sarahsHash + ",NOTES-USER\nplain-user,abc123,NOTES-USER\n";
+
+        assertThatThrownBy(() -> new UserImporter(dataSource).importUsers(new BufferedReader(new StringReader(csv))))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageStartingWith("Line 2");
+    }
+}
@@ -0,0 +1,12 @@
+package com.linuxwizards.simplenotesapi;
+
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+
+@DirtiesContext
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = {"spring.threads.virtual.enabled=true",
+                // Coalesced reads would hide the JDBC blocking the two thread modes are compared on
+                "notes.single-flight.enabled=false"})
+class VirtualThreadLoadTest extends ThreadModeLoadTest {
+}
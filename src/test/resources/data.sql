@@ -1,4 +0,0 @@
-INSERT INTO NOTE(ID, TITLE, CONTENT, OWNER) VALUES (99, 'This is a title', 'This is a note', 'sarah1');
-INSERT INTO NOTE(ID, TITLE, CONTENT, OWNER) VALUES (100, 'Second title', 'Second note', 'sarah1');
-INSERT INTO NOTE(ID, TITLE, CONTENT, OWNER) VALUES (101, 'Another title', 'Another note', 'sarah1');
-INSERT INTO NOTE(ID, TITLE, CONTENT, OWNER) VALUES (102, 'Kumar''s title', 'Kumar''s note', 'kumar2');
@@ -0,0 +1,20 @@
+INSERT INTO NOTE(ID, TITLE, CONTENT, OWNER) VALUES (99, 'This is a title', 'This is a note', 'sarah1');
+INSERT INTO NOTE(ID, TITLE, CONTENT, OWNER) VALUES (100, 'Second title', 'Second note', 'sarah1');
+INSERT INTO NOTE(ID, TITLE, CONTENT, OWNER) VALUES (101, 'Another title', 'Another note', 'sarah1');
+INSERT INTO NOTE(ID, TITLE, CONTENT, OWNER) VALUES (102, 'Kumar''s title', 'Kumar''s note', 'kumar2');
+-- Keep generated ids clear of the fixed ids above
+ALTER TABLE NOTE ALTER COLUMN ID RESTART WITH 1000;
+INSERT INTO NOTE_CHANGE(SEQ, NOTE_ID, OWNER, TYPE, CHANGED_AT)
+SELECT NEXT VALUE FOR NOTE_CHANGE_SEQ, ID, OWNER, 'CREATED', CURRENT_TIMESTAMP FROM NOTE ORDER BY ID;
+-- Test users; the hashes are Argon2 (Spring Security 5.8 defaults) of abc123, qrs456, xyz789 and adm789
+MERGE INTO APP_USER(USERNAME, PASSWORD) KEY(USERNAME) VALUES
+    ('sarah1', '$argon2id$v=19$m=16384,t=2,p=1$5IrjtRqWvKT9+f5ml0lbUA$CqUnvRhOXoWdIFmKdCdo/I9I7Ht2pE1673Hq9I+N2t8'),
+    ('hank-cant-note', '$argon2id$v=19$m=16384,t=2,p=1$8t9rTT8NHwWlw9kSmL/6Gw$LSugjW+7MPyxTg8LjijSWB30iORr7i8Am373G9qRy0w'),
+    ('kumar2', '$argon2id$v=19$m=16384,t=2,p=1$Qhcn9ck2D4Jyaq4e1U57CA$c9fSaH/JYVS+BKn/fER29y6i0ciCMUhCnr9sRrv9OTk'),
+    ('notes-admin', '$argon2id$v=19$m=16384,t=2,p=1$r7nJfDmjLghCNswkB3Udtw$s9NaQ8FiYt5kCeVybXHGuN9rAh09Tlit1jHPLzLaj3g');
+MERGE INTO APP_USER_ROLE(USERNAME, ROLE) KEY(USERNAME, ROLE) VALUES
+    ('sarah1', 'NOTES-USER'),
+    ('hank-cant-note', 'LOCKED-USER'),
+    ('kumar2', 'NOTES-USER'),
+    ('notes-admin', 'NOTES-USER'),
+    ('notes-admin', 'NOTES-ADMIN');